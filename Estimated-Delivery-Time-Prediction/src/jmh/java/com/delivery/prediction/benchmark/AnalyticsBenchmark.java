@@ -0,0 +1,48 @@
+package com.delivery.prediction.benchmark;
+
+import com.delivery.prediction.service.AnalyticsService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// End-to-end cost of the analytics dashboard calls under each analytics engine
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AnalyticsBenchmark {
+
+	@Param({"100000"})
+	public int rows;
+
+	@Param({"incremental", "sql", "columnar"})
+	public String engine;
+
+	private ConfigurableApplicationContext context;
+	private AnalyticsService analyticsService;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		context = BenchmarkApplication.start(rows, "analytics.engine=" + engine);
+		analyticsService = context.getBean(AnalyticsService.class);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		context.close();
+	}
+
+	@Benchmark
+	public Map<String, Object> averageDeliveryTime() {
+		return analyticsService.calculateAverageDeliveryTime();
+	}
+
+	@Benchmark
+	public Map<String, Object> trafficImpact() {
+		return analyticsService.calculateTrafficImpact();
+	}
+}
@@ -0,0 +1,58 @@
+package com.delivery.prediction.benchmark;
+
+import com.delivery.prediction.EstimatedDeliveryTimePredictionApplication;
+import com.delivery.prediction.perf.PorterDataGenerator;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+// Starts the application in the perf profile against a freshly generated in-memory H2 database
+// (a new one per call), so benchmarks and load tests exercise the real beans offline
+final class BenchmarkApplication {
+
+	private BenchmarkApplication() {
+	}
+
+	static ConfigurableApplicationContext start(int rows, String... extraProperties) {
+		return start(WebApplicationType.NONE, rows, extraProperties);
+	}
+
+	// With the embedded web server on a random port (local.server.port)
+	static ConfigurableApplicationContext startServer(int rows, String... extraProperties) {
+		List<String> properties = new ArrayList<>(List.of(extraProperties));
+		properties.add("server.port=0");
+		return start(WebApplicationType.SERVLET, rows, properties.toArray(new String[0]));
+	}
+
+	private static ConfigurableApplicationContext start(WebApplicationType webType, int rows, String... extraProperties) {
+		String url = PorterDataGenerator.h2Url("benchmark-" + System.nanoTime());
+		try {
+			// Train on startup instead of loading an artifact left by an earlier run
+			Path artifact = Files.createTempFile("delivery-models", ".bin");
+			Files.delete(artifact);
+
+			List<String> args = new ArrayList<>(List.of(
+					"--spring.profiles.active=perf",
+					"--spring.datasource.url=" + url,
+					"--perf.data.rows=" + rows,
+					"--perf.data.seed=42",
+					"--spring.main.banner-mode=off",
+					"--logging.level.root=WARN",
+					"--model.artifact.path=" + artifact));
+			for (String property : extraProperties) {
+				args.add("--" + property);
+			}
+			return new SpringApplicationBuilder(EstimatedDeliveryTimePredictionApplication.class)
+					.web(webType)
+					.run(args.toArray(new String[0]));
+		} catch (IOException e) {
+			throw new IllegalStateException("Could not prepare the model artifact path", e);
+		}
+	}
+}
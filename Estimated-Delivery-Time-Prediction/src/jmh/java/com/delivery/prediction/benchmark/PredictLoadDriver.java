@@ -0,0 +1,162 @@
+package com.delivery.prediction.benchmark;
+
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Closed-loop HTTP load test of the predict and analytics endpoints, run once with Tomcat's
+// platform worker pool and once with virtual threads, each against its own generated H2 database
+// (the perf profile). Every predict request also persists its prediction, so the blocking JDBC
+// path is part of what is measured; the analytics scenario reads the published snapshots.
+//
+//   mvn -Pjmh test-compile exec:exec@load-test [-Dload.args="requests concurrency rows scenario"]
+//
+// scenario is predict, analytics or all (the default). Prints throughput and latency percentiles
+// per endpoint and mode and writes them as JSON to target/load-result.json.
+public final class PredictLoadDriver {
+
+	private static final String[] PREDICT_ENDPOINTS = {"predict/simple", "predict/multiple", "predict/polynomial"};
+
+	private static final String[] ANALYTICS_ENDPOINTS = {
+			"analytics/average-time", "analytics/traffic-impact", "analytics/model-accuracy",
+			"analytics/timeseries/hour-of-day"
+	};
+
+	private PredictLoadDriver() {
+	}
+
+	public static void main(String[] args) throws Exception {
+		int requests = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+		int concurrency = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+		int rows = args.length > 2 ? Integer.parseInt(args[2]) : 10000;
+		String scenario = args.length > 3 ? args[3] : "all";
+		List<String> endpoints = new ArrayList<>();
+		if (!scenario.equals("analytics")) {
+			endpoints.addAll(List.of(PREDICT_ENDPOINTS));
+		}
+		if (!scenario.equals("predict")) {
+			endpoints.addAll(List.of(ANALYTICS_ENDPOINTS));
+		}
+
+		List<String> results = new ArrayList<>();
+		for (boolean virtualThreads : new boolean[]{false, true}) {
+			ConfigurableApplicationContext context = BenchmarkApplication.startServer(rows,
+					"spring.threads.virtual.enabled=" + virtualThreads);
+			try {
+				String base = "http://localhost:" + context.getEnvironment().getProperty("local.server.port") + "/api/";
+				for (String endpoint : endpoints) {
+					// Warm up the JIT and the connection pools before measuring
+					run(base + endpoint, requests / 10, concurrency);
+					Result result = run(base + endpoint, requests, concurrency);
+					String mode = virtualThreads ? "virtual" : "platform";
+					System.out.printf(Locale.ROOT, "%-32s %-9s %9.0f req/s  p50 %7.2f ms  p99 %7.2f ms  max %7.2f ms  errors %d%n",
+							endpoint, mode, result.throughput, result.percentile(0.50), result.percentile(0.99),
+							result.percentile(1.0), result.errors);
+					results.add(result.toJson(endpoint, mode, concurrency));
+				}
+			} finally {
+				context.close();
+			}
+		}
+
+		Path output = Paths.get("target", "load-result.json");
+		Files.createDirectories(output.getParent());
+		Files.writeString(output, "[\n  " + String.join(",\n  ", results) + "\n]\n");
+	}
+
+	// Send requests from at most concurrency clients at a time and collect per-request latency
+	private static Result run(String url, int requests, int concurrency) throws InterruptedException {
+		HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+		long[] latencies = new long[requests];
+		AtomicInteger errors = new AtomicInteger();
+		Semaphore inFlight = new Semaphore(concurrency);
+		SplittableRandom random = new SplittableRandom(7);
+
+		long start = System.nanoTime();
+		try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+			for (int i = 0; i < requests; i++) {
+				int index = i;
+				HttpRequest request = url.contains("/api/predict/") ? predictRequest(url, random) : analyticsRequest(url, random);
+				inFlight.acquire();
+				clients.execute(() -> {
+					long sent = System.nanoTime();
+					try {
+						HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+						if (response.statusCode() != 200) {
+							errors.incrementAndGet();
+						}
+					} catch (IOException | InterruptedException e) {
+						errors.incrementAndGet();
+					} finally {
+						latencies[index] = System.nanoTime() - sent;
+						inFlight.release();
+					}
+				});
+			}
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		Arrays.sort(latencies);
+		return new Result(requests / seconds, latencies, errors.get());
+	}
+
+	private static HttpRequest predictRequest(String url, SplittableRandom random) {
+		String body = String.format(Locale.ROOT,
+				"{\"marketId\":%d,\"category\":\"pizza\",\"totalItems\":%d,\"subtotal\":%d,\"drivingDuration\":%d}",
+				1 + random.nextInt(6), 1 + random.nextInt(8), 500 + random.nextInt(4000), 120 + random.nextInt(1500));
+		return HttpRequest.newBuilder(URI.create(url))
+				.header("Content-Type", "application/json")
+				.POST(HttpRequest.BodyPublishers.ofString(body))
+				.build();
+	}
+
+	// Time series are asked for all markets or a single one, as dashboards do
+	private static HttpRequest analyticsRequest(String url, SplittableRandom random) {
+		int market = random.nextInt(7);
+		String query = market == 0 || !url.contains("/timeseries/") ? "" : "?marketId=" + market;
+		return HttpRequest.newBuilder(URI.create(url + query)).GET().build();
+	}
+
+	private static final class Result {
+
+		private final double throughput;
+		private final long[] sortedLatencies;
+		private final int errors;
+
+		private Result(double throughput, long[] sortedLatencies, int errors) {
+			this.throughput = throughput;
+			this.sortedLatencies = sortedLatencies;
+			this.errors = errors;
+		}
+
+		// In milliseconds
+		private double percentile(double q) {
+			int index = (int) Math.ceil(q * sortedLatencies.length) - 1;
+			return sortedLatencies[Math.max(0, Math.min(index, sortedLatencies.length - 1))] / 1e6;
+		}
+
+		private String toJson(String endpoint, String mode, int concurrency) {
+			return String.format(Locale.ROOT,
+					"{\"endpoint\":\"%s\",\"threads\":\"%s\",\"concurrency\":%d,\"requests\":%d,\"throughputPerSecond\":%.1f,"
+							+ "\"p50Ms\":%.3f,\"p90Ms\":%.3f,\"p99Ms\":%.3f,\"maxMs\":%.3f,\"errors\":%d}",
+					endpoint, mode, concurrency, sortedLatencies.length, throughput,
+					percentile(0.5), percentile(0.9), percentile(0.99), percentile(1.0), errors);
+		}
+	}
+}
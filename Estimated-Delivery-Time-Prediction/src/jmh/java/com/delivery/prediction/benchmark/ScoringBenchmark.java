@@ -0,0 +1,60 @@
+package com.delivery.prediction.benchmark;
+
+import com.delivery.prediction.model.Prediction;
+import com.delivery.prediction.service.PredictionService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+// Per-call latency and throughput of the single-order predict methods
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScoringBenchmark {
+
+	@Param({"10000"})
+	public int rows;
+
+	private ConfigurableApplicationContext context;
+	private PredictionService predictionService;
+	private Prediction order;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		context = BenchmarkApplication.start(rows);
+		predictionService = context.getBean(PredictionService.class);
+		order = Prediction.builder()
+				.marketId(2)
+				.createdAt(LocalDateTime.now())
+				.storePrimaryCategory("pizza")
+				.totalItems(3)
+				.subtotal(2800.0)
+				.estimatedStoreToConsumerDrivingDuration(640)
+				.build();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		context.close();
+	}
+
+	@Benchmark
+	public double predictSimple() {
+		return predictionService.predictSimpleDeliveryTime(order);
+	}
+
+	@Benchmark
+	public double predictMultiple() {
+		return predictionService.predictMultipleDeliveryTime(order);
+	}
+
+	@Benchmark
+	public double predictPolynomial() {
+		return predictionService.predictPolynomialDeliveryTime(order);
+	}
+}
@@ -0,0 +1,45 @@
+package com.delivery.prediction.benchmark;
+
+import com.delivery.prediction.regression.ModelSnapshot;
+import com.delivery.prediction.service.ModelTrainer;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+// Time and allocation (run with -prof gc, as the jmh profile does) of a full training pass,
+// the work initializeModel does when no model artifact is present. With the feature store
+// enabled the rows come from memory; with it disabled every pass streams from the database.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TrainingBenchmark {
+
+	@Param({"100000"})
+	public int rows;
+
+	@Param({"true", "false"})
+	public boolean featureStore;
+
+	private ConfigurableApplicationContext context;
+	private ModelTrainer modelTrainer;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		context = BenchmarkApplication.start(rows, "features.store.enabled=" + featureStore);
+		modelTrainer = context.getBean(ModelTrainer.class);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		context.close();
+	}
+
+	@Benchmark
+	public ModelSnapshot train() {
+		return modelTrainer.train();
+	}
+}
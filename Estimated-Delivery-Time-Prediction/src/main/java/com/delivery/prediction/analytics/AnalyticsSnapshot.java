@@ -0,0 +1,42 @@
+package com.delivery.prediction.analytics;
+
+import lombok.Getter;
+
+// Immutable, pre-serialised result of one analytics view. The version and ETag only change when
+// the serialised body does, so an unchanged recompute keeps clients' cached copies valid.
+@Getter
+public final class AnalyticsSnapshot {
+
+    private final long version;
+    // Strong validator: version plus a digest of the body, quoted as HTTP requires
+    private final String etag;
+    private final byte[] body;
+    // Epoch millis at which this body was first computed
+    private final long modifiedAt;
+    // Data version (see AnalyticsAggregateStore) and time of the computation that last confirmed it
+    private final long dataVersion;
+    private final long computedAt;
+
+    public AnalyticsSnapshot(long version, String etag, byte[] body, long modifiedAt, long dataVersion, long computedAt) {
+        this.version = version;
+        this.etag = etag;
+        this.body = body;
+        this.modifiedAt = modifiedAt;
+        this.dataVersion = dataVersion;
+        this.computedAt = computedAt;
+    }
+
+    // Uncached result of a computation that failed; the body is the error response
+    public static AnalyticsSnapshot error(byte[] body) {
+        return new AnalyticsSnapshot(0, null, body, 0, 0, 0);
+    }
+
+    public boolean isError() {
+        return etag == null;
+    }
+
+    // Same body, confirmed against newer data
+    public AnalyticsSnapshot confirmed(long newDataVersion, long newComputedAt) {
+        return new AnalyticsSnapshot(version, etag, body, modifiedAt, newDataVersion, newComputedAt);
+    }
+}
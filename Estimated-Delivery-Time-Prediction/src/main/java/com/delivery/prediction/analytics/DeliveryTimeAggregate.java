@@ -0,0 +1,91 @@
+package com.delivery.prediction.analytics;
+
+import com.delivery.prediction.regression.ModelType;
+
+// Running sums (and sums of squares) of actual and predicted delivery minutes over a set of orders.
+// Not thread-safe; owners synchronise updates and hand out copies to readers.
+public final class DeliveryTimeAggregate implements PartialAggregate<DeliveryTimeAggregate> {
+
+    private long count;
+    private double actualSum;
+    private double actualSquares;
+    private final double[] predictedSums = new double[ModelType.values().length];
+    private final double[] predictedSquares = new double[ModelType.values().length];
+
+    public DeliveryTimeAggregate() {
+    }
+
+    // Aggregate over rows already summed elsewhere (e.g. by the database)
+    public DeliveryTimeAggregate(long count, double actualSum, double actualSquares) {
+        this.count = count;
+        this.actualSum = actualSum;
+        this.actualSquares = actualSquares;
+    }
+
+    @Override
+    public void add(double actualMinutes, double simpleMinutes, double multipleMinutes, double polynomialMinutes) {
+        count++;
+        actualSum += actualMinutes;
+        actualSquares += actualMinutes * actualMinutes;
+        addPredicted(ModelType.SIMPLE, simpleMinutes);
+        addPredicted(ModelType.MULTIPLE, multipleMinutes);
+        addPredicted(ModelType.POLYNOMIAL, polynomialMinutes);
+    }
+
+    // Add to one model's prediction total without counting a new row
+    public void addPredicted(ModelType type, double predictedMinutes) {
+        predictedSums[type.ordinal()] += predictedMinutes;
+        predictedSquares[type.ordinal()] += predictedMinutes * predictedMinutes;
+    }
+
+    // Add one model's prediction total and sum of squares over rows already counted
+    public void addPredictedSums(ModelType type, double predictedSum, double predictedSquares) {
+        predictedSums[type.ordinal()] += predictedSum;
+        this.predictedSquares[type.ordinal()] += predictedSquares;
+    }
+
+    @Override
+    public void merge(DeliveryTimeAggregate other) {
+        count += other.count;
+        actualSum += other.actualSum;
+        actualSquares += other.actualSquares;
+        for (int i = 0; i < predictedSums.length; i++) {
+            predictedSums[i] += other.predictedSums[i];
+            predictedSquares[i] += other.predictedSquares[i];
+        }
+    }
+
+    public DeliveryTimeAggregate copy() {
+        DeliveryTimeAggregate copy = new DeliveryTimeAggregate();
+        copy.merge(this);
+        return copy;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getActualSum() {
+        return actualSum;
+    }
+
+    public double getActualSquares() {
+        return actualSquares;
+    }
+
+    public double getPredictedSum(ModelType type) {
+        return predictedSums[type.ordinal()];
+    }
+
+    public double getPredictedSquares(ModelType type) {
+        return predictedSquares[type.ordinal()];
+    }
+
+    public double averageActual() {
+        return actualSum / count;
+    }
+
+    public double averagePredicted(ModelType type) {
+        return predictedSums[type.ordinal()] / count;
+    }
+}
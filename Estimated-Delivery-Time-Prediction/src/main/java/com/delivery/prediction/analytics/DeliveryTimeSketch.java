@@ -0,0 +1,114 @@
+package com.delivery.prediction.analytics;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Mergeable distribution of delivery minutes: count, mean, min and max from running sums, and
+// quantiles from an HDR-style log-linear histogram with 1-minute buckets below 32 minutes and 16
+// buckets per power of two above, so a quantile is off by at most one bucket width (1/16 of its
+// value). Sketches merge by adding their counters. Not thread-safe.
+public final class DeliveryTimeSketch {
+
+    private static final int LINEAR_BUCKETS = 32;
+    private static final int SUB_BUCKETS = 16;
+    private static final int FIRST_EXPONENT = 5;
+    // Deliveries of 2^12 = 4096 minutes or more share the last bucket
+    private static final int MAX_EXPONENT = 12;
+    private static final int BUCKETS = LINEAR_BUCKETS + (MAX_EXPONENT - FIRST_EXPONENT) * SUB_BUCKETS;
+
+    private long count;
+    private double sum;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+    private final long[] histogram = new long[BUCKETS + 1];
+
+    public void add(double minutes) {
+        count++;
+        sum += minutes;
+        min = Math.min(min, minutes);
+        max = Math.max(max, minutes);
+        histogram[bucket(minutes)]++;
+    }
+
+    public void merge(DeliveryTimeSketch other) {
+        count += other.count;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        for (int i = 0; i < histogram.length; i++) {
+            histogram[i] += other.histogram[i];
+        }
+    }
+
+    public DeliveryTimeSketch copy() {
+        DeliveryTimeSketch copy = new DeliveryTimeSketch();
+        copy.merge(this);
+        return copy;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double mean() {
+        return count == 0 ? Double.NaN : sum / count;
+    }
+
+    // Minutes below which a fraction q of the deliveries fall, interpolated within its bucket
+    public double quantile(double q) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        double target = q * count;
+        long cumulative = 0;
+        for (int i = 0; i < histogram.length; i++) {
+            if (histogram[i] > 0 && cumulative + histogram[i] >= target) {
+                double lower = lowerBound(i);
+                double upper = i == BUCKETS ? max : lowerBound(i + 1);
+                double fraction = (target - cumulative) / histogram[i];
+                return Math.max(min, Math.min(max, lower + fraction * (upper - lower)));
+            }
+            cumulative += histogram[i];
+        }
+        return max;
+    }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("count", count);
+        if (count > 0) {
+            stats.put("meanMinutes", mean());
+            stats.put("minMinutes", min);
+            stats.put("p50Minutes", quantile(0.5));
+            stats.put("p90Minutes", quantile(0.9));
+            stats.put("p99Minutes", quantile(0.99));
+            stats.put("maxMinutes", max);
+        }
+        return stats;
+    }
+
+    static int bucket(double minutes) {
+        if (!(minutes > 0)) {
+            return 0;
+        }
+        if (minutes < LINEAR_BUCKETS) {
+            return (int) minutes;
+        }
+        long whole = (long) minutes;
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(whole);
+        if (exponent >= MAX_EXPONENT) {
+            return BUCKETS;
+        }
+        int subBucket = (int) (whole >>> (exponent - 4)) - SUB_BUCKETS;
+        return LINEAR_BUCKETS + (exponent - FIRST_EXPONENT) * SUB_BUCKETS + subBucket;
+    }
+
+    static double lowerBound(int bucket) {
+        if (bucket < LINEAR_BUCKETS) {
+            return bucket;
+        }
+        int exponent = FIRST_EXPONENT + (bucket - LINEAR_BUCKETS) / SUB_BUCKETS;
+        int subBucket = (bucket - LINEAR_BUCKETS) % SUB_BUCKETS;
+        return (double) (SUB_BUCKETS + subBucket) * (1L << (exponent - 4));
+    }
+}
@@ -0,0 +1,108 @@
+package com.delivery.prediction.analytics;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Mergeable error statistics of one model's predictions: mean absolute error, RMSE, MAPE and
+// bias from running sums, and quantiles of the absolute error from a fixed-width histogram
+// (accurate to half a bucket, i.e. 15 seconds). Not thread-safe; each partition owns its own.
+public final class ErrorMetrics {
+
+    private static final double BUCKET_MINUTES = 0.5;
+    // Errors of four hours or more share the last bucket
+    private static final int BUCKETS = 480;
+
+    private long count;
+    private double absoluteSum;
+    private double squaredSum;
+    private double signedSum;
+    private double percentageSum;
+    private long percentageCount;
+    private double maxAbsolute;
+    private final long[] histogram = new long[BUCKETS + 1];
+
+    public void add(double actualMinutes, double predictedMinutes) {
+        double error = predictedMinutes - actualMinutes;
+        double absolute = Math.abs(error);
+        count++;
+        absoluteSum += absolute;
+        squaredSum += error * error;
+        signedSum += error;
+        // Percentage error is undefined for zero-minute deliveries
+        if (actualMinutes > 0) {
+            percentageSum += absolute / actualMinutes;
+            percentageCount++;
+        }
+        maxAbsolute = Math.max(maxAbsolute, absolute);
+        histogram[Math.min(BUCKETS, (int) (absolute / BUCKET_MINUTES))]++;
+    }
+
+    public void merge(ErrorMetrics other) {
+        count += other.count;
+        absoluteSum += other.absoluteSum;
+        squaredSum += other.squaredSum;
+        signedSum += other.signedSum;
+        percentageSum += other.percentageSum;
+        percentageCount += other.percentageCount;
+        maxAbsolute = Math.max(maxAbsolute, other.maxAbsolute);
+        for (int i = 0; i < histogram.length; i++) {
+            histogram[i] += other.histogram[i];
+        }
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double meanAbsoluteError() {
+        return absoluteSum / count;
+    }
+
+    public double rootMeanSquaredError() {
+        return Math.sqrt(squaredSum / count);
+    }
+
+    // In percent
+    public double meanAbsolutePercentageError() {
+        return percentageCount == 0 ? Double.NaN : 100.0 * percentageSum / percentageCount;
+    }
+
+    // Positive when the model over-predicts on average
+    public double bias() {
+        return signedSum / count;
+    }
+
+    // Absolute error below which a fraction q of the predictions fall, interpolated within its bucket
+    public double absoluteErrorQuantile(double q) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        double target = q * count;
+        long cumulative = 0;
+        for (int i = 0; i < histogram.length; i++) {
+            if (histogram[i] > 0 && cumulative + histogram[i] >= target) {
+                double lower = i * BUCKET_MINUTES;
+                double upper = i == BUCKETS ? maxAbsolute : lower + BUCKET_MINUTES;
+                double fraction = (target - cumulative) / histogram[i];
+                return Math.min(maxAbsolute, lower + fraction * (upper - lower));
+            }
+            cumulative += histogram[i];
+        }
+        return maxAbsolute;
+    }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("count", count);
+        metrics.put("meanAbsoluteErrorMinutes", meanAbsoluteError());
+        metrics.put("rootMeanSquaredErrorMinutes", rootMeanSquaredError());
+        metrics.put("meanAbsolutePercentageError", meanAbsolutePercentageError());
+        metrics.put("biasMinutes", bias());
+        metrics.put("medianAbsoluteErrorMinutes", absoluteErrorQuantile(0.5));
+        metrics.put("p90AbsoluteErrorMinutes", absoluteErrorQuantile(0.9));
+        metrics.put("p95AbsoluteErrorMinutes", absoluteErrorQuantile(0.95));
+        metrics.put("p99AbsoluteErrorMinutes", absoluteErrorQuantile(0.99));
+        metrics.put("maxAbsoluteErrorMinutes", maxAbsolute);
+        return metrics;
+    }
+}
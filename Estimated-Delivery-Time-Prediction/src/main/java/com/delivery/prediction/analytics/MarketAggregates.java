@@ -0,0 +1,27 @@
+package com.delivery.prediction.analytics;
+
+import lombok.Getter;
+
+import java.util.Map;
+
+// Consistent view of the overall and per-market delivery time aggregates
+@Getter
+public final class MarketAggregates {
+
+    private final DeliveryTimeAggregate overall;
+    private final Map<Integer, DeliveryTimeAggregate> byMarket;
+
+    public MarketAggregates(DeliveryTimeAggregate overall, Map<Integer, DeliveryTimeAggregate> byMarket) {
+        this.overall = overall;
+        this.byMarket = byMarket;
+    }
+
+    // Overall totals are the merge of the per-market ones
+    public static MarketAggregates fromMarkets(Map<Integer, DeliveryTimeAggregate> byMarket) {
+        DeliveryTimeAggregate overall = new DeliveryTimeAggregate();
+        for (DeliveryTimeAggregate market : byMarket.values()) {
+            overall.merge(market);
+        }
+        return new MarketAggregates(overall, byMarket);
+    }
+}
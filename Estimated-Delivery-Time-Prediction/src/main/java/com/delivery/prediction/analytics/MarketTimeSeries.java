@@ -0,0 +1,77 @@
+package com.delivery.prediction.analytics;
+
+// Delivery-time sketches of one market in two bucketings: a ring buffer of one-minute buckets
+// covering the last windowMinutes, and 24 hour-of-day buckets accumulated over all time.
+// Each ring slot remembers the minute it holds and is reset when a later minute wraps onto it,
+// so expiry costs nothing on the write path. Thread-safe: buckets are guarded by striped locks.
+public final class MarketTimeSeries {
+
+    private static final int LOCK_STRIPES = 64;
+
+    private final int windowMinutes;
+    private final DeliveryTimeSketch[] minuteBuckets;
+    private final long[] bucketMinutes;
+    private final DeliveryTimeSketch[] hourBuckets = new DeliveryTimeSketch[24];
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    public MarketTimeSeries(int windowMinutes) {
+        this.windowMinutes = windowMinutes;
+        this.minuteBuckets = new DeliveryTimeSketch[windowMinutes];
+        this.bucketMinutes = new long[windowMinutes];
+        for (int hour = 0; hour < hourBuckets.length; hour++) {
+            hourBuckets[hour] = new DeliveryTimeSketch();
+        }
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    // Record a delivery of an order placed at epochMinute (local hour of day hourOfDay); it only
+    // enters the ring if that minute is still inside the window ending at nowMinute
+    public void add(long epochMinute, int hourOfDay, double deliveryMinutes, long nowMinute) {
+        DeliveryTimeSketch hour = hourBuckets[hourOfDay];
+        synchronized (hour) {
+            hour.add(deliveryMinutes);
+        }
+        if (epochMinute <= nowMinute - windowMinutes || epochMinute > nowMinute) {
+            return;
+        }
+        int slot = (int) Math.floorMod(epochMinute, (long) windowMinutes);
+        synchronized (locks[slot % LOCK_STRIPES]) {
+            if (minuteBuckets[slot] == null || bucketMinutes[slot] < epochMinute) {
+                minuteBuckets[slot] = new DeliveryTimeSketch();
+                bucketMinutes[slot] = epochMinute;
+            } else if (bucketMinutes[slot] > epochMinute) {
+                // The slot already moved on to a later minute
+                return;
+            }
+            minuteBuckets[slot].add(deliveryMinutes);
+        }
+    }
+
+    // Merge the minutes of (nowMinute - minutes, nowMinute] into buckets of step minutes, oldest
+    // first, adding each bucket's sketch to the matching entry of into (allocated by the caller)
+    public void window(long nowMinute, int minutes, int step, DeliveryTimeSketch[] into) {
+        int span = Math.min(minutes, windowMinutes);
+        long first = nowMinute - span + 1;
+        for (long minute = first; minute <= nowMinute; minute++) {
+            int slot = (int) Math.floorMod(minute, (long) windowMinutes);
+            synchronized (locks[slot % LOCK_STRIPES]) {
+                if (minuteBuckets[slot] != null && bucketMinutes[slot] == minute) {
+                    into[(int) ((minute - first) / step)].merge(minuteBuckets[slot]);
+                }
+            }
+        }
+    }
+
+    public DeliveryTimeSketch hourOfDay(int hour) {
+        DeliveryTimeSketch sketch = hourBuckets[hour];
+        synchronized (sketch) {
+            return sketch.copy();
+        }
+    }
+
+    public int getWindowMinutes() {
+        return windowMinutes;
+    }
+}
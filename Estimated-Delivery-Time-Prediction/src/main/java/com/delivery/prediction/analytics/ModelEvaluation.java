@@ -0,0 +1,40 @@
+package com.delivery.prediction.analytics;
+
+import com.delivery.prediction.regression.ModelType;
+
+// Accuracy of every model over a set of orders: the delivery time sums plus error metrics per model
+public final class ModelEvaluation implements PartialAggregate<ModelEvaluation> {
+
+    private final DeliveryTimeAggregate totals = new DeliveryTimeAggregate();
+    private final ErrorMetrics[] errors = new ErrorMetrics[ModelType.values().length];
+
+    public ModelEvaluation() {
+        for (int i = 0; i < errors.length; i++) {
+            errors[i] = new ErrorMetrics();
+        }
+    }
+
+    @Override
+    public void add(double actualMinutes, double simpleMinutes, double multipleMinutes, double polynomialMinutes) {
+        totals.add(actualMinutes, simpleMinutes, multipleMinutes, polynomialMinutes);
+        errors[ModelType.SIMPLE.ordinal()].add(actualMinutes, simpleMinutes);
+        errors[ModelType.MULTIPLE.ordinal()].add(actualMinutes, multipleMinutes);
+        errors[ModelType.POLYNOMIAL.ordinal()].add(actualMinutes, polynomialMinutes);
+    }
+
+    @Override
+    public void merge(ModelEvaluation other) {
+        totals.merge(other.totals);
+        for (int i = 0; i < errors.length; i++) {
+            errors[i].merge(other.errors[i]);
+        }
+    }
+
+    public DeliveryTimeAggregate getTotals() {
+        return totals;
+    }
+
+    public ErrorMetrics getErrors(ModelType type) {
+        return errors[type.ordinal()];
+    }
+}
@@ -0,0 +1,10 @@
+package com.delivery.prediction.analytics;
+
+// Partial result over a subset of rows that can be built independently per partition and
+// combined afterwards. merge must be associative so partitions can be combined in any grouping.
+public interface PartialAggregate<T extends PartialAggregate<T>> {
+
+    void add(double actualMinutes, double simpleMinutes, double multipleMinutes, double polynomialMinutes);
+
+    void merge(T other);
+}
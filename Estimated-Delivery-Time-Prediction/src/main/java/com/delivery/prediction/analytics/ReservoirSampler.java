@@ -0,0 +1,42 @@
+package com.delivery.prediction.analytics;
+
+import java.util.SplittableRandom;
+
+// Uniform fixed-size sample over a stream of unknown length (Vitter's algorithm R).
+// Rows are fixed-width double[] slots preallocated up front; callers ask for a slot with
+// nextSlot() and only copy the row in when it has been selected.
+public final class ReservoirSampler {
+
+    private final double[][] reservoir;
+    private final SplittableRandom random;
+    private long seen;
+
+    public ReservoirSampler(int capacity, int width, SplittableRandom random) {
+        this.reservoir = new double[capacity][width];
+        this.random = random;
+    }
+
+    // Slot the next stream element should be written to, or -1 if it is not sampled
+    public int nextSlot() {
+        seen++;
+        if (seen <= reservoir.length) {
+            return (int) (seen - 1);
+        }
+        long candidate = random.nextLong(seen);
+        return candidate < reservoir.length ? (int) candidate : -1;
+    }
+
+    public double[] slot(int index) {
+        return reservoir[index];
+    }
+
+    // Number of rows held, at most the capacity
+    public int size() {
+        return (int) Math.min(seen, reservoir.length);
+    }
+
+    // Number of rows offered so far
+    public long getSeen() {
+        return seen;
+    }
+}
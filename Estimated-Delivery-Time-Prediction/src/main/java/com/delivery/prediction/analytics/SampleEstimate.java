@@ -0,0 +1,50 @@
+package com.delivery.prediction.analytics;
+
+import lombok.Getter;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Estimated population mean with its standard error and 95% confidence interval
+@Getter
+public final class SampleEstimate {
+
+    private static final double Z_95 = 1.959963984540054;
+
+    private final double mean;
+    private final double standardError;
+
+    public SampleEstimate(double mean, double standardError) {
+        this.mean = mean;
+        this.standardError = standardError;
+    }
+
+    // Mean of a simple random sample of n out of population rows, from its sum and sum of squares.
+    // The finite population correction shrinks the error to 0 once the whole population is sampled.
+    public static SampleEstimate fromSums(long n, double sum, double sumOfSquares, long population) {
+        if (n == 0) {
+            return new SampleEstimate(Double.NaN, Double.NaN);
+        }
+        double mean = sum / n;
+        double variance = n > 1 ? Math.max(0.0, (sumOfSquares - n * mean * mean) / (n - 1)) : Double.NaN;
+        double correction = population > 1 ? Math.max(0.0, (double) (population - n) / (population - 1)) : 0.0;
+        return new SampleEstimate(mean, Math.sqrt(variance / n * correction));
+    }
+
+    public double getLower() {
+        return mean - Z_95 * standardError;
+    }
+
+    public double getUpper() {
+        return mean + Z_95 * standardError;
+    }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> interval = new HashMap<>();
+        interval.put("standardError", standardError);
+        interval.put("lower", getLower());
+        interval.put("upper", getUpper());
+        interval.put("confidenceLevel", 0.95);
+        return interval;
+    }
+}
@@ -0,0 +1,93 @@
+package com.delivery.prediction.analytics;
+
+import com.delivery.prediction.regression.ModelType;
+
+import java.util.Map;
+import java.util.function.ToDoubleFunction;
+
+// Per-market samples together with the size of each market.
+// Market estimates come from their own sample; overall estimates use the stratified
+// estimator, weighting every sampled market by its share of the sampled markets' population.
+public final class StratifiedSample {
+
+    private final Map<Integer, DeliveryTimeAggregate> samples;
+    private final Map<Integer, Long> populations;
+    // Rows were drawn in blocks (cluster sampling) while the standard errors assume a simple random
+    // sample, so they understate the uncertainty
+    private final boolean clustered;
+
+    public StratifiedSample(Map<Integer, DeliveryTimeAggregate> samples, Map<Integer, Long> populations, boolean clustered) {
+        this.samples = samples;
+        this.populations = populations;
+        this.clustered = clustered;
+    }
+
+    public boolean isClustered() {
+        return clustered;
+    }
+
+    public Map<Integer, DeliveryTimeAggregate> getSamples() {
+        return samples;
+    }
+
+    public long getSampleSize() {
+        long size = 0;
+        for (DeliveryTimeAggregate sample : samples.values()) {
+            size += sample.getCount();
+        }
+        return size;
+    }
+
+    public SampleEstimate actual(int marketId) {
+        return estimate(marketId, DeliveryTimeAggregate::getActualSum, DeliveryTimeAggregate::getActualSquares);
+    }
+
+    public SampleEstimate predicted(int marketId, ModelType type) {
+        return estimate(marketId, sample -> sample.getPredictedSum(type), sample -> sample.getPredictedSquares(type));
+    }
+
+    public SampleEstimate overallActual() {
+        return overall(DeliveryTimeAggregate::getActualSum, DeliveryTimeAggregate::getActualSquares);
+    }
+
+    public SampleEstimate overallPredicted(ModelType type) {
+        return overall(sample -> sample.getPredictedSum(type), sample -> sample.getPredictedSquares(type));
+    }
+
+    private SampleEstimate estimate(int marketId, ToDoubleFunction<DeliveryTimeAggregate> sum,
+                                    ToDoubleFunction<DeliveryTimeAggregate> squares) {
+        DeliveryTimeAggregate sample = samples.get(marketId);
+        return SampleEstimate.fromSums(sample.getCount(), sum.applyAsDouble(sample), squares.applyAsDouble(sample),
+                populations.getOrDefault(marketId, sample.getCount()));
+    }
+
+    private SampleEstimate overall(ToDoubleFunction<DeliveryTimeAggregate> sum, ToDoubleFunction<DeliveryTimeAggregate> squares) {
+        // Only markets with sampled rows are weighted (RANGE can draw blocks without a trainable row),
+        // so the weights sum to 1 over the markets the estimate covers
+        long total = 0;
+        for (Integer marketId : samples.keySet()) {
+            if (samples.get(marketId).getCount() > 0) {
+                total += populations.getOrDefault(marketId, samples.get(marketId).getCount());
+            }
+        }
+        if (total == 0) {
+            return new SampleEstimate(Double.NaN, Double.NaN);
+        }
+
+        double mean = 0.0;
+        double variance = 0.0;
+        for (Integer marketId : samples.keySet()) {
+            if (samples.get(marketId).getCount() == 0) {
+                continue;
+            }
+            SampleEstimate market = estimate(marketId, sum, squares);
+            double weight = (double) populations.getOrDefault(marketId, samples.get(marketId).getCount()) / total;
+            mean += weight * market.getMean();
+            // A single-row stratum has no variance estimate; treat it as exact rather than poisoning the total
+            if (!Double.isNaN(market.getStandardError())) {
+                variance += weight * weight * market.getStandardError() * market.getStandardError();
+            }
+        }
+        return new SampleEstimate(mean, Math.sqrt(variance));
+    }
+}
@@ -0,0 +1,21 @@
+package com.delivery.prediction.cache;
+
+import com.delivery.prediction.regression.ModelType;
+
+// Lookaside cache in front of model scoring: callers build a key, try get, and on a miss score
+// the key's features and put the result. The in-process implementation is CaffeinePredictionCache;
+// a shared cache can be plugged in by registering another implementation as the @Primary bean.
+public interface PredictionCache {
+
+    boolean isEnabled();
+
+    // Key for scoring features with the given model version; features are copied and quantized
+    PredictionCacheKey key(ModelType type, long modelVersion, double[] features);
+
+    // Cached prediction, or null on a miss
+    Double get(PredictionCacheKey key);
+
+    void put(PredictionCacheKey key, double prediction);
+
+    void invalidateAll();
+}
@@ -0,0 +1,54 @@
+package com.delivery.prediction.cache;
+
+import com.delivery.prediction.regression.ModelType;
+
+import java.util.Arrays;
+
+// Cache key of one prediction: the model, the version it was trained as and the feature vector
+// after quantization. The quantized vector is also what gets scored on a miss, so every entry is
+// exactly the prediction for its key.
+public final class PredictionCacheKey {
+
+    private final ModelType type;
+    private final long modelVersion;
+    private final double[] features;
+    private final int hash;
+
+    public PredictionCacheKey(ModelType type, long modelVersion, double[] features) {
+        this.type = type;
+        this.modelVersion = modelVersion;
+        this.features = features;
+        this.hash = 31 * (31 * type.hashCode() + Long.hashCode(modelVersion)) + Arrays.hashCode(features);
+    }
+
+    public ModelType getType() {
+        return type;
+    }
+
+    public long getModelVersion() {
+        return modelVersion;
+    }
+
+    // Quantized features; callers must not modify them
+    public double[] getFeatures() {
+        return features;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof PredictionCacheKey)) {
+            return false;
+        }
+        PredictionCacheKey key = (PredictionCacheKey) other;
+        return hash == key.hash && type == key.type && modelVersion == key.modelVersion
+                && Arrays.equals(features, key.features);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
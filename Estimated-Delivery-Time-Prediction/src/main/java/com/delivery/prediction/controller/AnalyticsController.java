@@ -1,14 +1,23 @@
 package com.delivery.prediction.controller;
 
+import com.delivery.prediction.analytics.AnalyticsSnapshot;
 import com.delivery.prediction.service.AnalyticsService;
+import com.delivery.prediction.service.AnalyticsSnapshotService;
+import com.delivery.prediction.service.DeliveryTimeSeriesService;
+import com.delivery.prediction.service.SamplingService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 @RestController
@@ -20,10 +29,33 @@ public class AnalyticsController {
     @Autowired
     private AnalyticsService analyticsService;
 
+    @Autowired
+    private AnalyticsSnapshotService analyticsSnapshotService;
+
+    @Autowired
+    private DeliveryTimeSeriesService deliveryTimeSeriesService;
+
+    // Browsers reuse a snapshot for as long as it can be stale anyway, then revalidate it by ETag
+    @Value("${analytics.snapshot.refresh-interval-ms:5000}")
+    private long snapshotRefreshIntervalMs;
+
+    // sampleSize (rows per market) switches to sampled estimates with confidence intervals;
+    // sampling selects RESERVOIR (streamed, the default) or RANGE (random id ranges read through the
+    // index; faster, but its confidence intervals are approximate)
     @GetMapping("/average-time")
-    public ResponseEntity<Map<String, Object>> getAverageDeliveryTime() {
+    public ResponseEntity<?> getAverageDeliveryTime(@RequestParam(required = false) Integer sampleSize,
+                                                    @RequestParam(defaultValue = "reservoir") String sampling) {
+        ResponseEntity<Map<String, Object>> invalid = validateSampling(sampleSize, sampling);
+        if (invalid != null) {
+            return invalid;
+        }
         try {
-            Map<String, Object> result = analyticsService.calculateAverageDeliveryTime();
+            // Samples are drawn per request; full aggregates come from the shared snapshot
+            if (sampleSize == null && analyticsSnapshotService.isEnabled()) {
+                return snapshotResponse(AnalyticsSnapshotService.View.AVERAGE_TIME);
+            }
+
+            Map<String, Object> result = analyticsService.calculateAverageDeliveryTime(sampleSize, samplingMethod(sampling));
             
             if (result.containsKey("error")) {
                 return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(result);
@@ -41,9 +73,18 @@ public class AnalyticsController {
     }
 
     @GetMapping("/traffic-impact")
-    public ResponseEntity<Map<String, Object>> getTrafficImpact() {
+    public ResponseEntity<?> getTrafficImpact(@RequestParam(required = false) Integer sampleSize,
+                                              @RequestParam(defaultValue = "reservoir") String sampling) {
+        ResponseEntity<Map<String, Object>> invalid = validateSampling(sampleSize, sampling);
+        if (invalid != null) {
+            return invalid;
+        }
         try {
-            Map<String, Object> result = analyticsService.calculateTrafficImpact();
+            if (sampleSize == null && analyticsSnapshotService.isEnabled()) {
+                return snapshotResponse(AnalyticsSnapshotService.View.TRAFFIC_IMPACT);
+            }
+
+            Map<String, Object> result = analyticsService.calculateTrafficImpact(sampleSize, samplingMethod(sampling));
             
             if (result.containsKey("error")) {
                 return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(result);
@@ -59,4 +100,81 @@ public class AnalyticsController {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
         }
     }
+
+    // Error metrics (MAE, RMSE, MAPE, bias, quantiles) of every model, overall and per market
+    @GetMapping("/model-accuracy")
+    public ResponseEntity<?> getModelAccuracy() {
+        if (analyticsSnapshotService.isEnabled()) {
+            return snapshotResponse(AnalyticsSnapshotService.View.MODEL_ACCURACY);
+        }
+        Map<String, Object> result = analyticsService.calculateModelAccuracy();
+        if (result.containsKey("error")) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(result);
+        }
+        return ResponseEntity.ok(result);
+    }
+
+    // Delivery-time statistics of the last minutes in buckets of step minutes, for one market or all
+    @GetMapping("/timeseries/recent")
+    public ResponseEntity<Map<String, Object>> getRecentDeliveryTimes(
+            @RequestParam(defaultValue = "60") int minutes,
+            @RequestParam(defaultValue = "5") int step,
+            @RequestParam(required = false) Integer marketId) {
+        if (!deliveryTimeSeriesService.isEnabled()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "Time series are disabled", "status", "error"));
+        }
+        if (minutes <= 0 || minutes > deliveryTimeSeriesService.getWindowMinutes()) {
+            return ResponseEntity.badRequest().body(Map.of("error",
+                    "minutes must be between 1 and " + deliveryTimeSeriesService.getWindowMinutes(), "status", "error"));
+        }
+        if (step <= 0 || step > minutes) {
+            return ResponseEntity.badRequest().body(Map.of("error", "step must be between 1 and minutes", "status", "error"));
+        }
+        return ResponseEntity.ok(deliveryTimeSeriesService.recent(marketId, minutes, step));
+    }
+
+    // All-time delivery-time statistics by hour of day, for one market or all
+    @GetMapping("/timeseries/hour-of-day")
+    public ResponseEntity<Map<String, Object>> getDeliveryTimesByHour(@RequestParam(required = false) Integer marketId) {
+        if (!deliveryTimeSeriesService.isEnabled()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "Time series are disabled", "status", "error"));
+        }
+        return ResponseEntity.ok(deliveryTimeSeriesService.hourOfDay(marketId));
+    }
+
+    // Pre-serialised snapshot body with a strong ETag. Spring answers a matching If-None-Match
+    // (or If-Modified-Since) with 304 and no body.
+    private ResponseEntity<byte[]> snapshotResponse(AnalyticsSnapshotService.View view) {
+        AnalyticsSnapshot snapshot = analyticsSnapshotService.get(view);
+        if (snapshot.isError()) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(snapshot.getBody());
+        }
+        return ResponseEntity.ok()
+                .eTag(snapshot.getEtag())
+                .lastModified(snapshot.getModifiedAt())
+                .cacheControl(CacheControl.maxAge(snapshotRefreshIntervalMs, TimeUnit.MILLISECONDS).mustRevalidate())
+                .header("X-Analytics-Version", String.valueOf(snapshot.getVersion()))
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(snapshot.getBody());
+    }
+
+    private ResponseEntity<Map<String, Object>> validateSampling(Integer sampleSize, String sampling) {
+        if (sampleSize != null && sampleSize <= 0) {
+            return ResponseEntity.badRequest().body(Map.of("error", "sampleSize must be positive", "status", "error"));
+        }
+        if (samplingMethod(sampling) == null) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Unknown sampling method: " + sampling, "status", "error"));
+        }
+        return null;
+    }
+
+    private static SamplingService.Method samplingMethod(String sampling) {
+        try {
+            return SamplingService.Method.valueOf(sampling.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
 }
\ No newline at end of file
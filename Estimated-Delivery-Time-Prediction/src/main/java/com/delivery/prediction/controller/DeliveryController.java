@@ -0,0 +1,46 @@
+package com.delivery.prediction.controller;
+
+import com.delivery.prediction.service.DeliveryFeedbackService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+
+// Feedback of completed deliveries. Bodies are streamed, so a whole dataset can be posted as one
+// file, e.g. curl --data-binary @porter_data.csv -H 'Content-Type: text/csv' .../api/deliveries
+@RestController
+@RequestMapping("/api/deliveries")
+public class DeliveryController {
+
+    private static final String NDJSON = "application/x-ndjson";
+
+    @Autowired
+    private DeliveryFeedbackService deliveryFeedbackService;
+
+    // JSON array or NDJSON of DeliveryFeedback records
+    @PostMapping(consumes = {MediaType.APPLICATION_JSON_VALUE, NDJSON})
+    public ResponseEntity<Map<String, Object>> ingestJson(InputStream body) throws IOException {
+        return respond(deliveryFeedbackService.ingestJson(body));
+    }
+
+    // CSV with a header row, e.g. the Porter dataset or /api/predictions/export?format=csv
+    @PostMapping(consumes = "text/csv")
+    public ResponseEntity<Map<String, Object>> ingestCsv(InputStream body) throws IOException {
+        return respond(deliveryFeedbackService.ingestCsv(body));
+    }
+
+    // Rejected records do not fail the request; a body that cannot be parsed does, after the
+    // records before the failure have been loaded
+    private static ResponseEntity<Map<String, Object>> respond(DeliveryFeedbackService.Summary summary) {
+        if (summary.getError() != null) {
+            return ResponseEntity.badRequest().body(summary.toMap());
+        }
+        return ResponseEntity.ok(summary.toMap());
+    }
+}
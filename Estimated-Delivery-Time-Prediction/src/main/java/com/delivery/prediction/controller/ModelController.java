@@ -0,0 +1,69 @@
+package com.delivery.prediction.controller;
+
+import com.delivery.prediction.regression.ModelSnapshot;
+import com.delivery.prediction.service.ModelRegistry;
+import com.delivery.prediction.service.ModelRetrainingService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/models")
+public class ModelController {
+
+    @Autowired
+    private ModelRegistry modelRegistry;
+
+    @Autowired
+    private ModelRetrainingService modelRetrainingService;
+
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> listVersions() {
+        ModelSnapshot active = modelRegistry.getActive();
+        List<Map<String, Object>> versions = new ArrayList<>();
+        for (ModelSnapshot snapshot : modelRegistry.getVersions()) {
+            Map<String, Object> version = new HashMap<>();
+            version.put("version", snapshot.getVersion());
+            version.put("trainedAt", snapshot.getTrainedAt());
+            version.put("trainingRows", snapshot.getTrainingRows());
+            version.put("active", snapshot == active);
+            versions.add(version);
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("activeVersion", active == null ? null : active.getVersion());
+        response.put("retraining", modelRetrainingService.isRetraining());
+        response.put("versions", versions);
+        return ResponseEntity.ok(response);
+    }
+
+    // Kick off a background retrain; the new version becomes active once it has finished
+    @PostMapping("/retrain")
+    public ResponseEntity<Map<String, Object>> retrain() {
+        Map<String, Object> response = new HashMap<>();
+        if (!modelRetrainingService.requestRetrain()) {
+            response.put("status", "already running");
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
+        }
+        response.put("status", "started");
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+    }
+
+    // Roll back (or forward) to a version still held in the registry
+    @PostMapping("/{version}/activate")
+    public ResponseEntity<Map<String, Object>> activate(@PathVariable long version) {
+        Map<String, Object> response = new HashMap<>();
+        if (!modelRegistry.activate(version)) {
+            response.put("error", "Unknown model version: " + version);
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+        }
+        response.put("activeVersion", version);
+        return ResponseEntity.ok(response);
+    }
+}
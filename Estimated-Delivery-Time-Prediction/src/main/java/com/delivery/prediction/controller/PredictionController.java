@@ -2,12 +2,25 @@ package com.delivery.prediction.controller;
 
 import com.delivery.prediction.dto.PredictionRequest;
 import com.delivery.prediction.model.Prediction;
+import com.delivery.prediction.regression.ModelSnapshot;
+import com.delivery.prediction.regression.ModelType;
+import com.delivery.prediction.service.PredictionExportService;
 import com.delivery.prediction.service.PredictionService;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -16,80 +29,198 @@ import java.util.Map;
 @RequestMapping("/api")
 public class PredictionController {
 
+    private static final String NDJSON = "application/x-ndjson";
+
     @Autowired
     private PredictionService predictionService;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PredictionExportService predictionExportService;
+
+    @Value("${predictions.page.max-limit:10000}")
+    private int maxPageLimit;
+
     @PostMapping("/predict/simple")
-    public ResponseEntity<Map<String, Object>> predictSimple(@RequestBody PredictionRequest request) {
+    public ResponseEntity<Map<String, Object>> predictSimple(@RequestBody PredictionRequest request,
+                                                             @RequestParam(defaultValue = "false") boolean explain) {
         // Map simplified input to the Prediction model
-        Prediction data = Prediction.builder()
-                .marketId(request.getMarketId())
-                .createdAt(LocalDateTime.now())  // Default to current time
-                .storePrimaryCategory(request.getCategory())
-                .totalItems(request.getTotalItems())
-                .subtotal(request.getSubtotal())
-                .estimatedStoreToConsumerDrivingDuration(request.getDrivingDuration())
-                .build();
+        Prediction data = toPrediction(request, LocalDateTime.now());
 
-        // Predict and save
-        double estimatedTime = predictionService.predictSimpleDeliveryTime(data);
-        data.setActualDeliveryTime(data.getCreatedAt().plusMinutes((long) estimatedTime));
+        // Predict and save, with one model snapshot for the estimate and its explanation
+        ModelSnapshot models = predictionService.getModels();
+        double estimatedTime = predictionService.predictDeliveryTime(models, ModelType.SIMPLE, data);
+        data.setPredictedDeliveryTime(data.getCreatedAt().plusMinutes((long) estimatedTime));
         predictionService.savePrediction(data);
 
         // Create response
         Map<String, Object> response = new HashMap<>();
         response.put("estimatedTime", estimatedTime);
+        if (explain) {
+            response.put("explanation", predictionService.explain(models, ModelType.SIMPLE, data));
+        }
         return ResponseEntity.ok(response);
     }
 
     @PostMapping("/predict/multiple")
-    public ResponseEntity<Map<String, Object>> predictMultiple(@RequestBody PredictionRequest request) {
+    public ResponseEntity<Map<String, Object>> predictMultiple(@RequestBody PredictionRequest request,
+                                                               @RequestParam(defaultValue = "false") boolean explain) {
         // Map input to the Prediction model for multiple regression
-        Prediction data = Prediction.builder()
-                .marketId(request.getMarketId())
-                .createdAt(LocalDateTime.now())
-                .storePrimaryCategory(request.getCategory())
-                .totalItems(request.getTotalItems())
-                .subtotal(request.getSubtotal())
-                .estimatedStoreToConsumerDrivingDuration(request.getDrivingDuration())
-                .build();
+        Prediction data = toPrediction(request, LocalDateTime.now());
 
-        // Predict and save using multiple linear regression
-        double estimatedTime = predictionService.predictMultipleDeliveryTime(data);
-        data.setActualDeliveryTime(data.getCreatedAt().plusMinutes((long) estimatedTime));
+        // Predict and save using multiple linear regression, with one model snapshot for the estimate and its explanation
+        ModelSnapshot models = predictionService.getModels();
+        double estimatedTime = predictionService.predictDeliveryTime(models, ModelType.MULTIPLE, data);
+        data.setPredictedDeliveryTime(data.getCreatedAt().plusMinutes((long) estimatedTime));
         predictionService.savePrediction(data);
 
         // Create response
         Map<String, Object> response = new HashMap<>();
         response.put("estimatedTime", estimatedTime);
+        if (explain) {
+            response.put("explanation", predictionService.explain(models, ModelType.MULTIPLE, data));
+        }
         return ResponseEntity.ok(response);
     }
 
     @PostMapping("/predict/polynomial")
-    public ResponseEntity<Map<String, Object>> predictPolynomial(@RequestBody PredictionRequest request) {
+    public ResponseEntity<Map<String, Object>> predictPolynomial(@RequestBody PredictionRequest request,
+                                                                 @RequestParam(defaultValue = "false") boolean explain) {
         // Map input to the Prediction model for polynomial regression
-        Prediction data = Prediction.builder()
-                .marketId(request.getMarketId())
-                .createdAt(LocalDateTime.now())
-                .storePrimaryCategory(request.getCategory())
-                .totalItems(request.getTotalItems())
-                .subtotal(request.getSubtotal())
-                .estimatedStoreToConsumerDrivingDuration(request.getDrivingDuration())
-                .build();
+        Prediction data = toPrediction(request, LocalDateTime.now());
 
-        // Predict and save using polynomial regression
-        double estimatedTime = predictionService.predictPolynomialDeliveryTime(data);
-        data.setActualDeliveryTime(data.getCreatedAt().plusMinutes((long) estimatedTime));
+        // Predict and save using polynomial regression, with one model snapshot for the estimate and its explanation
+        ModelSnapshot models = predictionService.getModels();
+        double estimatedTime = predictionService.predictDeliveryTime(models, ModelType.POLYNOMIAL, data);
+        data.setPredictedDeliveryTime(data.getCreatedAt().plusMinutes((long) estimatedTime));
         predictionService.savePrediction(data);
 
         // Create response
         Map<String, Object> response = new HashMap<>();
         response.put("estimatedTime", estimatedTime);
+        if (explain) {
+            response.put("explanation", predictionService.explain(models, ModelType.POLYNOMIAL, data));
+        }
         return ResponseEntity.ok(response);
     }
 
+    // Score a JSON array of orders with one model; estimates come back in request order
+    @PostMapping(value = "/predict/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Map<String, Object>> predictBatch(@RequestParam(defaultValue = "multiple") String model,
+                                                            @RequestParam(defaultValue = "false") boolean explain,
+                                                            @RequestBody List<PredictionRequest> requests) {
+        return scoreBatch(model, explain, requests);
+    }
+
+    // Same as above for newline-delimited JSON, one PredictionRequest per line
+    @PostMapping(value = "/predict/batch", consumes = NDJSON)
+    public ResponseEntity<Map<String, Object>> predictBatchNdjson(@RequestParam(defaultValue = "multiple") String model,
+                                                                  @RequestParam(defaultValue = "false") boolean explain,
+                                                                  InputStream body) throws IOException {
+        List<PredictionRequest> requests = new ArrayList<>();
+        try (MappingIterator<PredictionRequest> lines = objectMapper.readerFor(PredictionRequest.class).readValues(body)) {
+            while (lines.hasNext()) {
+                requests.add(lines.next());
+            }
+        }
+        return scoreBatch(model, explain, requests);
+    }
+
+    // Keyset pagination: pass the returned nextAfterId as afterId to get the following page.
+    // from/to filter on created_at (ISO date-time, to exclusive).
     @GetMapping("/predictions")
-    public ResponseEntity<List<Prediction>> getAllPredictions() {
-        return ResponseEntity.ok(predictionService.getAllPredictions());
+    public ResponseEntity<Map<String, Object>> getPredictions(
+            @RequestParam(defaultValue = "0") long afterId,
+            @RequestParam(defaultValue = "1000") int limit,
+            @RequestParam(required = false) Integer marketId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        Map<String, Object> response = new HashMap<>();
+        if (limit <= 0 || limit > maxPageLimit) {
+            response.put("error", "limit must be between 1 and " + maxPageLimit);
+            return ResponseEntity.badRequest().body(response);
+        }
+
+        List<Prediction> page = predictionExportService.findPage(afterId, limit, marketId, from, to);
+        response.put("predictions", page);
+        response.put("count", page.size());
+        // A short page is the last one
+        response.put("nextAfterId", page.size() < limit ? null : page.get(page.size() - 1).getId());
+        return ResponseEntity.ok(response);
+    }
+
+    // Every matching row as NDJSON or CSV, streamed from a database cursor in constant memory
+    @GetMapping("/predictions/export")
+    public ResponseEntity<StreamingResponseBody> exportPredictions(
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam(required = false) Integer marketId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        PredictionExportService.Format exportFormat;
+        try {
+            exportFormat = PredictionExportService.Format.valueOf(format.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        StreamingResponseBody body = out -> predictionExportService.export(exportFormat, marketId, from, to, out);
+        boolean csv = exportFormat == PredictionExportService.Format.CSV;
+        return ResponseEntity.ok()
+                .contentType(csv ? MediaType.parseMediaType("text/csv") : MediaType.parseMediaType(NDJSON))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=predictions." + (csv ? "csv" : "ndjson"))
+                .body(body);
+    }
+
+    private ResponseEntity<Map<String, Object>> scoreBatch(String model, boolean explain, List<PredictionRequest> requests) {
+        Map<String, Object> response = new HashMap<>();
+        ModelType type;
+        try {
+            type = ModelType.valueOf(model.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            response.put("error", "Unknown model: " + model);
+            return ResponseEntity.badRequest().body(response);
+        }
+
+        // The whole batch shares one timestamp and is rejected up front if any row cannot be scored
+        LocalDateTime now = LocalDateTime.now();
+        List<Prediction> batch = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            PredictionRequest request = requests.get(i);
+            if (request.getTotalItems() == null || request.getSubtotal() == null || request.getDrivingDuration() == null) {
+                response.put("error", "Request " + i + " is missing totalItems, subtotal or drivingDuration");
+                return ResponseEntity.badRequest().body(response);
+            }
+            batch.add(toPrediction(request, now));
+        }
+
+        ModelSnapshot models = predictionService.getModels();
+        double[] estimatedTimes = predictionService.predictAndSaveBatch(models, type, batch);
+
+        response.put("model", type.name().toLowerCase());
+        response.put("count", estimatedTimes.length);
+        response.put("estimatedTimes", estimatedTimes);
+        if (explain) {
+            // In batch order, like estimatedTimes
+            response.put("explanations", predictionService.explainAll(models, type, batch));
+        }
+        return ResponseEntity.ok(response);
+    }
+
+    private Prediction toPrediction(PredictionRequest request, LocalDateTime createdAt) {
+        return Prediction.builder()
+                .orderId(request.getOrderId())
+                .marketId(request.getMarketId())
+                .createdAt(createdAt)  // Default to current time
+                .storePrimaryCategory(request.getCategory())
+                .totalItems(request.getTotalItems())
+                .subtotal(request.getSubtotal())
+                .estimatedStoreToConsumerDrivingDuration(request.getDrivingDuration())
+                // Null when not sent; PredictionService fills them in before scoring
+                .totalOnshiftDashers(request.getTotalOnshiftDashers())
+                .totalBusyDashers(request.getTotalBusyDashers())
+                .totalOutstandingOrders(request.getTotalOutstandingOrders())
+                .build();
     }
 }
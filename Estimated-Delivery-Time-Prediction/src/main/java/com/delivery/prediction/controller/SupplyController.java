@@ -0,0 +1,111 @@
+package com.delivery.prediction.controller;
+
+import com.delivery.prediction.dto.SupplyUpdate;
+import com.delivery.prediction.service.SupplySnapshotService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/supply")
+public class SupplyController {
+
+    @Autowired
+    private SupplySnapshotService supplySnapshotService;
+
+    // Current counts of every market with a fresh snapshot
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> getSupply() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("markets", supplySnapshotService.snapshot());
+        return ResponseEntity.ok(response);
+    }
+
+    // Replace the counts of one or more markets, e.g. from a dispatch system polling every few seconds.
+    // An update may leave counts out only for a market with a fresh snapshot (409 otherwise).
+    @PostMapping
+    public ResponseEntity<Map<String, Object>> setSupply(@RequestBody List<SupplyUpdate> updates) {
+        Map<String, Object> response = new HashMap<>();
+        // Validate the whole batch first so it is applied all or nothing
+        for (int i = 0; i < updates.size(); i++) {
+            SupplyUpdate update = updates.get(i);
+            String error = validate(update.getMarketId(), update, true);
+            if (error != null) {
+                response.put("error", "Update " + i + ": " + error);
+                return ResponseEntity.badRequest().body(response);
+            }
+            if (isPartial(update) && supplySnapshotService.get(update.getMarketId()) == SupplySnapshotService.MISSING) {
+                response.put("error", "Update " + i + ": market " + update.getMarketId()
+                        + " has no live counts to keep; send all three counts");
+                return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
+            }
+        }
+        int applied = 0;
+        for (SupplyUpdate update : updates) {
+            long state = supplySnapshotService.set(update.getMarketId(), update.getTotalOnshiftDashers(),
+                    update.getTotalBusyDashers(), update.getTotalOutstandingOrders());
+            if (state == SupplySnapshotService.MISSING) {
+                // The snapshot expired since validation
+                response.put("error", "Update " + applied + ": market " + update.getMarketId()
+                        + " has no live counts to keep; send all three counts");
+                response.put("count", applied);
+                return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
+            }
+            applied++;
+        }
+        response.put("count", applied);
+        return ResponseEntity.ok(response);
+    }
+
+    // Apply signed deltas to one market's counts, e.g. +1 outstanding order when an order is placed.
+    // 409 when the market has no fresh snapshot to apply them to.
+    @PostMapping("/{marketId}/adjust")
+    public ResponseEntity<Map<String, Object>> adjustSupply(@PathVariable int marketId, @RequestBody SupplyUpdate deltas) {
+        Map<String, Object> response = new HashMap<>();
+        String error = validate(marketId, deltas, false);
+        if (error != null) {
+            response.put("error", error);
+            return ResponseEntity.badRequest().body(response);
+        }
+        long state = supplySnapshotService.adjust(marketId, orZero(deltas.getTotalOnshiftDashers()),
+                orZero(deltas.getTotalBusyDashers()), orZero(deltas.getTotalOutstandingOrders()));
+        if (state == SupplySnapshotService.MISSING) {
+            response.put("error", "Market " + marketId + " has no live counts; set them before adjusting");
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
+        }
+        response.put("marketId", marketId);
+        response.put("totalOnshiftDashers", SupplySnapshotService.onshiftDashers(state));
+        response.put("totalBusyDashers", SupplySnapshotService.busyDashers(state));
+        response.put("totalOutstandingOrders", SupplySnapshotService.outstandingOrders(state));
+        return ResponseEntity.ok(response);
+    }
+
+    private String validate(Integer marketId, SupplyUpdate update, boolean absolute) {
+        if (marketId == null || !supplySnapshotService.isTracked(marketId)) {
+            return "unknown or missing marketId";
+        }
+        if (absolute) {
+            for (Integer count : new Integer[]{update.getTotalOnshiftDashers(), update.getTotalBusyDashers(),
+                    update.getTotalOutstandingOrders()}) {
+                if (count != null && (count < 0 || count > SupplySnapshotService.MAX_COUNT)) {
+                    return "counts must be between 0 and " + SupplySnapshotService.MAX_COUNT;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean isPartial(SupplyUpdate update) {
+        return update.getTotalOnshiftDashers() == null || update.getTotalBusyDashers() == null
+                || update.getTotalOutstandingOrders() == null;
+    }
+
+    private static int orZero(Integer value) {
+        return value == null ? 0 : value;
+    }
+}
@@ -0,0 +1,30 @@
+package com.delivery.prediction.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+// A completed delivery. With an orderId that was predicted before, only actualDeliveryTime is
+// needed; otherwise the order's details are stored as a new row (as in the Porter dataset).
+@Getter
+@Setter
+public class DeliveryFeedback {
+
+    private String orderId;
+    private LocalDateTime actualDeliveryTime;
+
+    private Integer marketId;
+    private LocalDateTime createdAt;
+    private String storePrimaryCategory;
+    private Integer orderProtocol;
+    private Integer totalItems;
+    private Double subtotal;
+    private Integer numDistinctItems;
+    private Double minItemPrice;
+    private Double maxItemPrice;
+    private Integer totalOnshiftDashers;
+    private Integer totalBusyDashers;
+    private Integer totalOutstandingOrders;
+    private Integer estimatedStoreToConsumerDrivingDuration;
+}
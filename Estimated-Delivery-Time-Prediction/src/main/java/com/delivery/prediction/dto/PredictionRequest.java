@@ -7,9 +7,16 @@ import lombok.Setter;
 @Setter
 public class PredictionRequest {
 
+    // Optional; lets the delivery feedback for this order be matched to the prediction
+    private String orderId;
     private Integer marketId;
     private String category;
     private Integer totalItems;
     private Double subtotal;
     private Integer drivingDuration;  // Simplified field name
+
+    // Market load; when omitted, taken from the live supply snapshot of the market
+    private Integer totalOnshiftDashers;
+    private Integer totalBusyDashers;
+    private Integer totalOutstandingOrders;
 }
@@ -0,0 +1,15 @@
+package com.delivery.prediction.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+// Supply and demand counts of one market; absent counts are left unchanged
+@Getter
+@Setter
+public class SupplyUpdate {
+
+    private Integer marketId;
+    private Integer totalOnshiftDashers;
+    private Integer totalBusyDashers;
+    private Integer totalOutstandingOrders;
+}
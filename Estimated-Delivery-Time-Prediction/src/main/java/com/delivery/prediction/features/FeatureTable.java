@@ -0,0 +1,122 @@
+package com.delivery.prediction.features;
+
+import com.delivery.prediction.regression.FeatureSchema;
+import com.delivery.prediction.repository.TrainingDataRepository.TrainingRowHandler;
+
+import java.util.Arrays;
+
+// Immutable columnar snapshot of the trainable porter_data rows, in id order.
+// Every feature is a contiguous double[] (columns[feature][row], laid out as in FeatureSchema)
+// next to the market id and the precomputed delivery minutes.
+//
+// Snapshots are append-only: an Appender writes past the end of the current arrays (growing
+// them when full) and publishes a new table with a larger row count, so older snapshots keep
+// seeing exactly their own rows while sharing storage with the new one.
+public final class FeatureTable {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final int rows;
+    private final long[] ids;
+    private final int[] marketIds;
+    private final double[][] columns;
+    private final double[] deliveryMinutes;
+
+    private FeatureTable(int rows, long[] ids, int[] marketIds, double[][] columns, double[] deliveryMinutes) {
+        this.rows = rows;
+        this.ids = ids;
+        this.marketIds = marketIds;
+        this.columns = columns;
+        this.deliveryMinutes = deliveryMinutes;
+    }
+
+    public static FeatureTable empty() {
+        return new FeatureTable(0, new long[0], new int[0], new double[FeatureSchema.SIZE][0], new double[0]);
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    // Highest id in the snapshot, 0 when empty
+    public long getMaxId() {
+        return rows == 0 ? 0 : ids[rows - 1];
+    }
+
+    // Shared storage: only the first getRows() entries belong to this snapshot, and callers must not write
+    public double[][] getColumns() {
+        return columns;
+    }
+
+    public int[] getMarketIds() {
+        return marketIds;
+    }
+
+    public double[] getDeliveryMinutes() {
+        return deliveryMinutes;
+    }
+
+    // Hand every row to the handler through one reused feature vector
+    public long forEachRow(TrainingRowHandler handler) {
+        double[] features = FeatureSchema.newVector();
+        for (int row = 0; row < rows; row++) {
+            for (int feature = 0; feature < FeatureSchema.SIZE; feature++) {
+                features[feature] = columns[feature][row];
+            }
+            handler.accept(marketIds[row], features, deliveryMinutes[row]);
+        }
+        return rows;
+    }
+
+    // Appends rows after this snapshot's last row. Only one appender may be in use per table lineage.
+    public Appender appender() {
+        return new Appender(this);
+    }
+
+    public static final class Appender {
+
+        private int rows;
+        private long[] ids;
+        private int[] marketIds;
+        private double[][] columns;
+        private double[] deliveryMinutes;
+
+        private Appender(FeatureTable base) {
+            this.rows = base.rows;
+            this.ids = base.ids;
+            this.marketIds = base.marketIds;
+            this.columns = base.columns;
+            this.deliveryMinutes = base.deliveryMinutes;
+        }
+
+        public void add(long id, int marketId, double[] features, double minutes) {
+            if (rows == ids.length) {
+                grow();
+            }
+            ids[rows] = id;
+            marketIds[rows] = marketId;
+            for (int feature = 0; feature < FeatureSchema.SIZE; feature++) {
+                columns[feature][rows] = features[feature];
+            }
+            deliveryMinutes[rows] = minutes;
+            rows++;
+        }
+
+        public FeatureTable build() {
+            return new FeatureTable(rows, ids, marketIds, columns, deliveryMinutes);
+        }
+
+        // Copy into arrays 1.5x the size; the previous snapshot keeps the old arrays
+        private void grow() {
+            int capacity = Math.max(INITIAL_CAPACITY, ids.length + (ids.length >> 1));
+            ids = Arrays.copyOf(ids, capacity);
+            marketIds = Arrays.copyOf(marketIds, capacity);
+            double[][] grown = new double[columns.length][];
+            for (int feature = 0; feature < columns.length; feature++) {
+                grown[feature] = Arrays.copyOf(columns[feature], capacity);
+            }
+            columns = grown;
+            deliveryMinutes = Arrays.copyOf(deliveryMinutes, capacity);
+        }
+    }
+}
@@ -11,19 +11,32 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 @NoArgsConstructor
 @Builder
-@Table(name = "porter_data", schema = "predictions")
+@Table(name = "porter_data", schema = "predictions", indexes = {
+        @Index(name = "idx_porter_data_market", columnList = "market_id"),
+        @Index(name = "idx_porter_data_created_actual", columnList = "created_at, actual_delivery_time"),
+        @Index(name = "idx_porter_data_order", columnList = "order_id")
+})
 public class Prediction {
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
+    // Caller's order key; delivery feedback is matched to the latest prediction of the order by it
+    @Column(nullable = true, length = 64)
+    private String orderId;
+
     private Integer marketId;
     private LocalDateTime createdAt = LocalDateTime.now();  // Default to current time
 
+    // Only ever set from a real delivery outcome; rows without one are not used for training
     @Column(nullable = true)
     private LocalDateTime actualDeliveryTime;
 
+    // Model estimate returned by the predict endpoints
+    @Column(nullable = true)
+    private LocalDateTime predictedDeliveryTime;
+
     private String storePrimaryCategory;
 
     @Column(nullable = true)
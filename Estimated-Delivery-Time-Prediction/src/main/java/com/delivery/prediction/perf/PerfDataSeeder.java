@@ -0,0 +1,54 @@
+package com.delivery.prediction.perf;
+
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanInitializationException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.logging.Logger;
+
+// perf profile only: fills an empty porter_data with generated orders as soon as the DataSource
+// exists, i.e. before JPA, the feature store or model training touch the database
+@Component
+@Profile("perf")
+public class PerfDataSeeder implements BeanPostProcessor {
+
+    private static final Logger logger = Logger.getLogger(PerfDataSeeder.class.getName());
+
+    @Value("${perf.data.rows:1000000}")
+    private int rows;
+
+    @Value("${perf.data.seed:42}")
+    private long seed;
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+        if (bean instanceof DataSource dataSource) {
+            seed(dataSource);
+        }
+        return bean;
+    }
+
+    private void seed(DataSource dataSource) {
+        try (Connection connection = dataSource.getConnection()) {
+            PorterDataGenerator.createSchema(connection);
+            // A file-backed database keeps its rows between runs
+            long existing = PorterDataGenerator.countRows(connection);
+            if (existing > 0) {
+                logger.info("porter_data already holds " + existing + " rows, not generating");
+                return;
+            }
+            long start = System.nanoTime();
+            PorterDataGenerator.generate(connection, rows, seed);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            logger.info(String.format("Generated %d rows in %.1f s (%.0f rows/s)", rows, seconds, rows / seconds));
+        } catch (SQLException e) {
+            throw new BeanInitializationException("Could not generate the perf data set", e);
+        }
+    }
+}
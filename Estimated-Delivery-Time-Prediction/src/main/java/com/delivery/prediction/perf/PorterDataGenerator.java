@@ -0,0 +1,147 @@
+package com.delivery.prediction.perf;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.SplittableRandom;
+
+// Fills porter_data with synthetic orders shaped like the Porter dataset: six markets, a month
+// of order timestamps, a skewed item count, subtotals in cents and delivery times driven by the
+// driving duration, basket size and dasher load. The same seed always produces the same rows.
+public final class PorterDataGenerator {
+
+    private static final String[] CATEGORIES = {
+            "american", "mexican", "pizza", "burger", "sandwich", "chinese", "japanese", "indian", "thai", "dessert"
+    };
+
+    private static final LocalDateTime START = LocalDateTime.of(2015, 1, 21, 0, 0);
+    private static final int PERIOD_MINUTES = 28 * 24 * 60;
+
+    private static final String CREATE_TABLE = "CREATE TABLE IF NOT EXISTS porter_data ("
+            + "id BIGINT AUTO_INCREMENT PRIMARY KEY, market_id INT, created_at TIMESTAMP(6), "
+            + "actual_delivery_time TIMESTAMP(6), store_primary_category VARCHAR(255), order_protocol INT, "
+            + "total_items INT, subtotal DOUBLE, num_distinct_items INT, min_item_price DOUBLE, max_item_price DOUBLE, "
+            + "total_onshift_dashers INT, total_busy_dashers INT, total_outstanding_orders INT, "
+            + "estimated_store_to_consumer_driving_duration INT, order_id VARCHAR(64), predicted_delivery_time TIMESTAMP(6))";
+
+    // Same names as the indexes on Prediction, so Hibernate's schema update finds them
+    private static final String[] CREATE_INDEXES = {
+            "CREATE INDEX IF NOT EXISTS idx_porter_data_market ON porter_data (market_id)",
+            "CREATE INDEX IF NOT EXISTS idx_porter_data_created_actual ON porter_data (created_at, actual_delivery_time)",
+            "CREATE INDEX IF NOT EXISTS idx_porter_data_order ON porter_data (order_id)"
+    };
+
+    private static final String INSERT = "INSERT INTO porter_data (market_id, created_at, actual_delivery_time, "
+            + "store_primary_category, order_protocol, total_items, subtotal, num_distinct_items, min_item_price, "
+            + "max_item_price, total_onshift_dashers, total_busy_dashers, total_outstanding_orders, "
+            + "estimated_store_to_consumer_driving_duration) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final int BATCH_SIZE = 1000;
+
+    // Batches per transaction; keeps the undo log small when loading millions of rows
+    private static final int BATCHES_PER_COMMIT = 50;
+
+    private PorterDataGenerator() {
+    }
+
+    // In-memory H2 database in MySQL mode with porter_data in the predictions schema, as the
+    // application expects; kept alive between connections until the JVM exits
+    public static String h2Url(String name) {
+        return "jdbc:h2:mem:" + name + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1"
+                + ";INIT=CREATE SCHEMA IF NOT EXISTS predictions\\;SET SCHEMA predictions";
+    }
+
+    // Create porter_data if needed and append the given number of synthetic orders
+    public static void generate(String jdbcUrl, int rows, long seed) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(jdbcUrl, "sa", "")) {
+            generate(connection, rows, seed);
+        }
+    }
+
+    public static void generate(Connection connection, int rows, long seed) throws SQLException {
+        SplittableRandom random = new SplittableRandom(seed);
+        createSchema(connection);
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try (PreparedStatement insert = connection.prepareStatement(INSERT)) {
+            for (int row = 0; row < rows; row++) {
+                addRow(insert, random);
+                insert.addBatch();
+                if ((row + 1) % BATCH_SIZE == 0) {
+                    insert.executeBatch();
+                    if ((row + 1) % (BATCH_SIZE * BATCHES_PER_COMMIT) == 0) {
+                        connection.commit();
+                    }
+                }
+            }
+            insert.executeBatch();
+            connection.commit();
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    // Create porter_data and its indexes if they do not exist yet
+    public static void createSchema(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(CREATE_TABLE);
+            for (String index : CREATE_INDEXES) {
+                statement.execute(index);
+            }
+        }
+    }
+
+    public static long countRows(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM porter_data")) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    private static void addRow(PreparedStatement insert, SplittableRandom random) throws SQLException {
+        int marketId = 1 + random.nextInt(6);
+        LocalDateTime createdAt = START.plusMinutes(random.nextInt(PERIOD_MINUTES)).plusSeconds(random.nextInt(60));
+
+        // Geometric basket size with mean around 3
+        int totalItems = 1;
+        while (totalItems < 20 && random.nextDouble() < 0.65) {
+            totalItems++;
+        }
+        int distinctItems = 1 + random.nextInt(totalItems);
+        double minPrice = 200 + random.nextInt(1200);
+        double maxPrice = minPrice + random.nextInt(1500);
+        double subtotal = Math.round(totalItems * (minPrice + maxPrice) / 2);
+
+        int onshift = 5 + random.nextInt(120);
+        int busy = (int) (onshift * (0.5 + 0.5 * random.nextDouble()));
+        int outstanding = (int) (busy * (0.8 + 0.8 * random.nextDouble()));
+        int drivingSeconds = 100 + (int) (-450 * Math.log(1 - random.nextDouble()));
+        drivingSeconds = Math.min(drivingSeconds, 2100);
+
+        // Prep time, the drive, basket size and a load term, plus right-skewed noise
+        double load = onshift == 0 ? 1.0 : (double) outstanding / onshift;
+        double minutes = 18 + drivingSeconds / 60.0 * 1.1 + 0.9 * totalItems + 6 * load
+                + 8 * -Math.log(1 - random.nextDouble());
+
+        insert.setInt(1, marketId);
+        insert.setTimestamp(2, Timestamp.valueOf(createdAt));
+        insert.setTimestamp(3, Timestamp.valueOf(createdAt.plusSeconds((long) (minutes * 60))));
+        insert.setString(4, CATEGORIES[random.nextInt(CATEGORIES.length)]);
+        insert.setInt(5, 1 + random.nextInt(7));
+        insert.setInt(6, totalItems);
+        insert.setDouble(7, subtotal);
+        insert.setInt(8, distinctItems);
+        insert.setDouble(9, minPrice);
+        insert.setDouble(10, maxPrice);
+        insert.setInt(11, onshift);
+        insert.setInt(12, busy);
+        insert.setInt(13, outstanding);
+        insert.setInt(14, drivingSeconds);
+    }
+}
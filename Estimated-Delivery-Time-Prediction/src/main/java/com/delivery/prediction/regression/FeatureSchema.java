@@ -0,0 +1,113 @@
+package com.delivery.prediction.regression;
+
+import com.delivery.prediction.model.Prediction;
+
+import java.util.List;
+import java.util.Locale;
+
+// Column layout of the feature vectors handed to RegressionModel.predict
+public final class FeatureSchema {
+
+    public static final int TOTAL_ITEMS = 0;
+    public static final int SUBTOTAL = 1;
+    public static final int DRIVING_DURATION = 2;
+    // Segment identifiers: not regressed on, only used to route a row to its segment's model
+    public static final int MARKET_ID = 3;
+    public static final int STORE_CATEGORY = 4;
+    // Market load when the order was placed
+    public static final int ONSHIFT_DASHERS = 5;
+    public static final int BUSY_DASHERS = 6;
+    public static final int OUTSTANDING_ORDERS = 7;
+
+    public static final int SIZE = 8;
+
+    // Feature values for a missing market_id or store_primary_category
+    public static final int UNKNOWN_MARKET = -1;
+    public static final int UNKNOWN_CATEGORY = 0;
+
+    // Column names by index; persisted with trained models so a model is never applied to a different layout
+    private static final String[] NAMES = {"total_items", "subtotal", "estimated_store_to_consumer_driving_duration",
+            "market_id", "store_primary_category", "total_onshift_dashers", "total_busy_dashers", "total_outstanding_orders"};
+
+    private FeatureSchema() {
+    }
+
+    public static String name(int feature) {
+        return NAMES[feature];
+    }
+
+    // Stable integer code of a store category. String.hashCode is specified by the JLS, so codes
+    // survive restarts and can be persisted with segment models without a dictionary.
+    public static int categoryCode(String category) {
+        if (category == null || category.isBlank()) {
+            return UNKNOWN_CATEGORY;
+        }
+        int code = category.trim().toLowerCase(Locale.ROOT).hashCode();
+        // Keep the sentinels free for their own meaning
+        return code == UNKNOWN_CATEGORY || code == Integer.MIN_VALUE ? 1 : code;
+    }
+
+    public static int marketId(Integer marketId) {
+        return marketId == null ? UNKNOWN_MARKET : marketId;
+    }
+
+    // Missing supply counts are NaN, as in TrainingDataRepository; the models fill in their
+    // training means
+    public static final double MISSING = Double.NaN;
+
+    private static double count(Integer value) {
+        return value == null ? MISSING : value;
+    }
+
+    public static double[] newVector() {
+        return new double[SIZE];
+    }
+
+    // Copy the model inputs of a Prediction into a (reusable) feature vector
+    public static double[] fill(Prediction data, double[] features) {
+        features[TOTAL_ITEMS] = data.getTotalItems();
+        features[SUBTOTAL] = data.getSubtotal();
+        features[DRIVING_DURATION] = data.getEstimatedStoreToConsumerDrivingDuration();
+        features[MARKET_ID] = marketId(data.getMarketId());
+        features[STORE_CATEGORY] = categoryCode(data.getStorePrimaryCategory());
+        features[ONSHIFT_DASHERS] = count(data.getTotalOnshiftDashers());
+        features[BUSY_DASHERS] = count(data.getTotalBusyDashers());
+        features[OUTSTANDING_ORDERS] = count(data.getTotalOutstandingOrders());
+        return features;
+    }
+
+    // Column-major copy of the model inputs of a batch: columns[feature][row]
+    public static double[][] columns(List<Prediction> batch) {
+        int rows = batch.size();
+        double[] totalItems = new double[rows];
+        double[] subtotal = new double[rows];
+        double[] drivingDuration = new double[rows];
+        double[] marketId = new double[rows];
+        double[] storeCategory = new double[rows];
+        double[] onshiftDashers = new double[rows];
+        double[] busyDashers = new double[rows];
+        double[] outstandingOrders = new double[rows];
+        for (int row = 0; row < rows; row++) {
+            Prediction data = batch.get(row);
+            totalItems[row] = data.getTotalItems();
+            subtotal[row] = data.getSubtotal();
+            drivingDuration[row] = data.getEstimatedStoreToConsumerDrivingDuration();
+            marketId[row] = marketId(data.getMarketId());
+            storeCategory[row] = categoryCode(data.getStorePrimaryCategory());
+            onshiftDashers[row] = count(data.getTotalOnshiftDashers());
+            busyDashers[row] = count(data.getTotalBusyDashers());
+            outstandingOrders[row] = count(data.getTotalOutstandingOrders());
+        }
+
+        double[][] columns = new double[SIZE][];
+        columns[TOTAL_ITEMS] = totalItems;
+        columns[SUBTOTAL] = subtotal;
+        columns[DRIVING_DURATION] = drivingDuration;
+        columns[MARKET_ID] = marketId;
+        columns[STORE_CATEGORY] = storeCategory;
+        columns[ONSHIFT_DASHERS] = onshiftDashers;
+        columns[BUSY_DASHERS] = busyDashers;
+        columns[OUTSTANDING_ORDERS] = outstandingOrders;
+        return columns;
+    }
+}
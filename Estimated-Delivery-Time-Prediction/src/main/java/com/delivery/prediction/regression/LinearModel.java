@@ -0,0 +1,115 @@
+package com.delivery.prediction.regression;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+
+// Fitted linear model: intercept + sum(coefficient[i] * features[featureIndexes[i]]).
+// A missing input (NaN) takes the term's fill value, the training mean of that feature.
+@Getter
+public final class LinearModel implements RegressionModel {
+
+    private final double intercept;
+    private final int[] featureIndexes;
+    private final double[] coefficients;
+    // Covariance of [intercept, coefficients...], or null when unknown
+    private final ParameterCovariance covariance;
+    // Value of each term's feature when it is missing, or null when inputs are never missing
+    private final double[] fillValues;
+
+    public LinearModel(double intercept, int[] featureIndexes, double[] coefficients) {
+        this(intercept, featureIndexes, coefficients, null, null);
+    }
+
+    public LinearModel(double intercept, int[] featureIndexes, double[] coefficients, ParameterCovariance covariance) {
+        this(intercept, featureIndexes, coefficients, covariance, null);
+    }
+
+    public LinearModel(double intercept, int[] featureIndexes, double[] coefficients, ParameterCovariance covariance,
+                       double[] fillValues) {
+        if (featureIndexes.length != coefficients.length) {
+            throw new IllegalArgumentException("Expected one coefficient per feature");
+        }
+        if (fillValues != null && fillValues.length != coefficients.length) {
+            throw new IllegalArgumentException("Expected one fill value per feature");
+        }
+        if (covariance != null && covariance.getParameters() != coefficients.length + 1) {
+            throw new IllegalArgumentException("Expected the covariance of the intercept and every coefficient");
+        }
+        this.intercept = intercept;
+        this.featureIndexes = featureIndexes.clone();
+        this.coefficients = coefficients.clone();
+        this.covariance = covariance;
+        this.fillValues = fillValues == null ? null : fillValues.clone();
+    }
+
+    // Build from a parameter vector laid out as [intercept, b1, b2, ...] (commons-math convention)
+    public static LinearModel fromParameters(double[] parameters, int... featureIndexes) {
+        return fromParameters(parameters, null, featureIndexes);
+    }
+
+    public static LinearModel fromParameters(double[] parameters, ParameterCovariance covariance, int... featureIndexes) {
+        return fromParameters(parameters, covariance, null, featureIndexes);
+    }
+
+    public static LinearModel fromParameters(double[] parameters, ParameterCovariance covariance, double[] fillValues,
+                                             int... featureIndexes) {
+        double[] coefficients = new double[parameters.length - 1];
+        System.arraycopy(parameters, 1, coefficients, 0, coefficients.length);
+        return new LinearModel(parameters[0], featureIndexes, coefficients, covariance, fillValues);
+    }
+
+    @Override
+    public double predict(double[] features) {
+        double prediction = intercept;
+        for (int i = 0; i < coefficients.length; i++) {
+            prediction += coefficients[i] * input(features, i);
+        }
+        return prediction;
+    }
+
+    // Fill value of term i; NaN (so the prediction stays undefined) when the model has none
+    public double fillValue(int i) {
+        return fillValues == null ? Double.NaN : fillValues[i];
+    }
+
+    private double input(double[] features, int i) {
+        double value = features[featureIndexes[i]];
+        return value == value ? value : fillValue(i);
+    }
+
+    @Override
+    public PredictionExplanation explain(double[] features, double[] baseline) {
+        double[] contributions = new double[coefficients.length];
+        for (int i = 0; i < coefficients.length; i++) {
+            contributions[i] = coefficients[i] * (input(features, i) - input(baseline, i));
+        }
+        double standardError = Double.NaN;
+        long degreesOfFreedom = 0;
+        if (covariance != null) {
+            double[] design = new double[coefficients.length + 1];
+            design[0] = 1.0;
+            for (int i = 0; i < coefficients.length; i++) {
+                design[i + 1] = input(features, i);
+            }
+            standardError = Math.sqrt(covariance.predictionVariance(design));
+            degreesOfFreedom = covariance.getDegreesOfFreedom();
+        }
+        return new PredictionExplanation(predict(features), predict(baseline), featureIndexes, contributions,
+                standardError, degreesOfFreedom);
+    }
+
+    @Override
+    public void predictBatch(double[][] columns, int offset, int length, double[] out) {
+        Arrays.fill(out, 0, length, intercept);
+        for (int i = 0; i < coefficients.length; i++) {
+            double coefficient = coefficients[i];
+            double fill = fillValue(i);
+            double[] column = columns[featureIndexes[i]];
+            for (int row = 0; row < length; row++) {
+                double value = column[offset + row];
+                out[row] += coefficient * (value == value ? value : fill);
+            }
+        }
+    }
+}
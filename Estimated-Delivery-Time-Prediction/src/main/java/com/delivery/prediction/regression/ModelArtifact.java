@@ -0,0 +1,261 @@
+package com.delivery.prediction.regression;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.zip.CRC32;
+
+// Compact binary encoding of a ModelSnapshot (about a kilobyte, plus about 350 bytes per segment model):
+//
+//   int    magic "EDTM"
+//   short  format version
+//   short  feature count, then each feature name (UTF)
+//   long   trainedAt (UTC epoch seconds), int nanos
+//   long   training rows
+//   double mean of each feature over the training rows
+//   per ModelType in ordinal order:
+//     byte kind followed by its parameters:
+//       1 = linear:     double intercept, short terms, then (short feature, double coefficient) per term,
+//                       then the covariance of [intercept, coefficients...], then a boolean and,
+//                       when set, the double fill value of each term
+//       2 = polynomial: short feature, double center, double scale, short terms, double coefficient per power,
+//                       then the covariance of the coefficients
+//       3 = segmented:  fallback model, int segments, then (long key, model) per segment
+//   long   CRC32 of every preceding byte
+//
+// A covariance is a boolean (absent for models trained without one), then the double residual
+// variance, long degrees of freedom and the packed lower triangle of the parameter covariance.
+// Models are stored as the coefficients they are evaluated with, so loading never refits anything.
+public final class ModelArtifact {
+
+    private static final int MAGIC = 0x4544544D;
+    private static final short FORMAT_VERSION = 6;
+
+    private static final byte LINEAR = 1;
+    private static final byte POLYNOMIAL = 2;
+    private static final byte SEGMENTED = 3;
+
+    private ModelArtifact() {
+    }
+
+    public static void write(ModelSnapshot snapshot, OutputStream target) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(512);
+        DataOutputStream out = new DataOutputStream(buffer);
+
+        out.writeInt(MAGIC);
+        out.writeShort(FORMAT_VERSION);
+        out.writeShort(FeatureSchema.SIZE);
+        for (int feature = 0; feature < FeatureSchema.SIZE; feature++) {
+            out.writeUTF(FeatureSchema.name(feature));
+        }
+        out.writeLong(snapshot.getTrainedAt().toEpochSecond(ZoneOffset.UTC));
+        out.writeInt(snapshot.getTrainedAt().getNano());
+        out.writeLong(snapshot.getTrainingRows());
+        for (int feature = 0; feature < FeatureSchema.SIZE; feature++) {
+            out.writeDouble(snapshot.getFeatureMean(feature));
+        }
+        for (ModelType type : ModelType.values()) {
+            writeModel(out, snapshot.get(type));
+        }
+        out.flush();
+
+        CRC32 crc = new CRC32();
+        crc.update(buffer.toByteArray(), 0, buffer.size());
+        out.writeLong(crc.getValue());
+        out.flush();
+        buffer.writeTo(target);
+    }
+
+    // Decode an artifact; throws IOException if it is truncated, corrupt, of another format version
+    // or written for a different feature layout. The returned snapshot has version 0.
+    public static ModelSnapshot read(InputStream source) throws IOException {
+        byte[] bytes = source.readAllBytes();
+        if (bytes.length < Long.BYTES) {
+            throw new IOException("Model artifact is truncated");
+        }
+        int bodyLength = bytes.length - Long.BYTES;
+        // Verify the checksum before parsing anything, so corruption is never mistaken for data
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bodyLength);
+        long storedCrc = new DataInputStream(new ByteArrayInputStream(bytes, bodyLength, Long.BYTES)).readLong();
+        if (storedCrc != crc.getValue()) {
+            throw new IOException("Model artifact checksum mismatch");
+        }
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 0, bodyLength));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a model artifact");
+        }
+        short formatVersion = in.readShort();
+        if (formatVersion != FORMAT_VERSION) {
+            throw new IOException("Unsupported model artifact version " + formatVersion);
+        }
+        int features = in.readUnsignedShort();
+        if (features != FeatureSchema.SIZE) {
+            throw new IOException("Model artifact has " + features + " features, expected " + FeatureSchema.SIZE);
+        }
+        for (int feature = 0; feature < features; feature++) {
+            String name = in.readUTF();
+            if (!name.equals(FeatureSchema.name(feature))) {
+                throw new IOException("Model artifact feature " + feature + " is " + name
+                        + ", expected " + FeatureSchema.name(feature));
+            }
+        }
+        LocalDateTime trainedAt = LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC);
+        long trainingRows = in.readLong();
+        double[] featureMeans = new double[features];
+        for (int feature = 0; feature < features; feature++) {
+            featureMeans[feature] = in.readDouble();
+        }
+        RegressionModel[] models = new RegressionModel[ModelType.values().length];
+        for (int i = 0; i < models.length; i++) {
+            models[i] = readModel(in);
+        }
+        if (in.available() != 0) {
+            throw new IOException("Model artifact has unexpected trailing data");
+        }
+
+        return new ModelSnapshot(0, trainedAt, trainingRows,
+                models[ModelType.SIMPLE.ordinal()], models[ModelType.MULTIPLE.ordinal()], models[ModelType.POLYNOMIAL.ordinal()],
+                featureMeans);
+    }
+
+    private static void writeModel(DataOutputStream out, RegressionModel model) throws IOException {
+        if (model instanceof LinearModel) {
+            LinearModel linear = (LinearModel) model;
+            out.writeByte(LINEAR);
+            out.writeDouble(linear.getIntercept());
+            out.writeShort(linear.getCoefficients().length);
+            for (int i = 0; i < linear.getCoefficients().length; i++) {
+                out.writeShort(linear.getFeatureIndexes()[i]);
+                out.writeDouble(linear.getCoefficients()[i]);
+            }
+            writeCovariance(out, linear.getCovariance());
+            out.writeBoolean(linear.getFillValues() != null);
+            if (linear.getFillValues() != null) {
+                for (double fill : linear.getFillValues()) {
+                    out.writeDouble(fill);
+                }
+            }
+        } else if (model instanceof PolynomialModel) {
+            PolynomialModel polynomial = (PolynomialModel) model;
+            out.writeByte(POLYNOMIAL);
+            out.writeShort(polynomial.getFeatureIndex());
+            out.writeDouble(polynomial.getCenter());
+            out.writeDouble(polynomial.getScale());
+            out.writeShort(polynomial.getCoefficients().length);
+            for (double coefficient : polynomial.getCoefficients()) {
+                out.writeDouble(coefficient);
+            }
+            writeCovariance(out, polynomial.getCovariance());
+        } else if (model instanceof SegmentedModel) {
+            SegmentedModel segmented = (SegmentedModel) model;
+            out.writeByte(SEGMENTED);
+            writeModel(out, segmented.getFallback());
+            out.writeInt(segmented.getSegments());
+            for (int i = 0; i < segmented.getSegments(); i++) {
+                out.writeLong(segmented.getKeys()[i]);
+                writeModel(out, segmented.getModels()[i]);
+            }
+        } else {
+            throw new IOException("Cannot persist model of type " + model.getClass().getSimpleName());
+        }
+    }
+
+    private static RegressionModel readModel(DataInputStream in) throws IOException {
+        byte kind = in.readByte();
+        switch (kind) {
+            case LINEAR: {
+                double intercept = in.readDouble();
+                int terms = in.readUnsignedShort();
+                int[] featureIndexes = new int[terms];
+                double[] coefficients = new double[terms];
+                for (int i = 0; i < terms; i++) {
+                    featureIndexes[i] = readFeatureIndex(in);
+                    coefficients[i] = in.readDouble();
+                }
+                ParameterCovariance covariance = readCovariance(in, terms + 1);
+                double[] fillValues = null;
+                if (in.readBoolean()) {
+                    fillValues = new double[terms];
+                    for (int i = 0; i < terms; i++) {
+                        fillValues[i] = in.readDouble();
+                    }
+                }
+                return new LinearModel(intercept, featureIndexes, coefficients, covariance, fillValues);
+            }
+            case POLYNOMIAL: {
+                int featureIndex = readFeatureIndex(in);
+                double center = in.readDouble();
+                double scale = in.readDouble();
+                if (!(scale > 0)) {
+                    throw new IOException("Model artifact has invalid polynomial scale " + scale);
+                }
+                double[] coefficients = new double[in.readUnsignedShort()];
+                for (int i = 0; i < coefficients.length; i++) {
+                    coefficients[i] = in.readDouble();
+                }
+                return new PolynomialModel(featureIndex, center, scale, coefficients,
+                        readCovariance(in, coefficients.length));
+            }
+            case SEGMENTED: {
+                RegressionModel fallback = readModel(in);
+                int segments = in.readInt();
+                if (segments < 0 || segments > in.available()) {
+                    throw new IOException("Model artifact has invalid segment count " + segments);
+                }
+                long[] keys = new long[segments];
+                RegressionModel[] models = new RegressionModel[segments];
+                for (int i = 0; i < segments; i++) {
+                    keys[i] = in.readLong();
+                    models[i] = readModel(in);
+                }
+                try {
+                    return new SegmentedModel(fallback, keys, models);
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("Model artifact has invalid segments", e);
+                }
+            }
+            default:
+                throw new IOException("Unknown model kind " + kind);
+        }
+    }
+
+    private static void writeCovariance(DataOutputStream out, ParameterCovariance covariance) throws IOException {
+        out.writeBoolean(covariance != null);
+        if (covariance != null) {
+            out.writeDouble(covariance.getResidualVariance());
+            out.writeLong(covariance.getDegreesOfFreedom());
+            for (double value : covariance.getPacked()) {
+                out.writeDouble(value);
+            }
+        }
+    }
+
+    private static ParameterCovariance readCovariance(DataInputStream in, int parameters) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        double residualVariance = in.readDouble();
+        long degreesOfFreedom = in.readLong();
+        double[] packed = new double[ParameterCovariance.packedLength(parameters)];
+        for (int i = 0; i < packed.length; i++) {
+            packed[i] = in.readDouble();
+        }
+        return new ParameterCovariance(parameters, packed, residualVariance, degreesOfFreedom);
+    }
+
+    private static int readFeatureIndex(DataInputStream in) throws IOException {
+        int feature = in.readShort();
+        if (feature < 0 || feature >= FeatureSchema.SIZE) {
+            throw new IOException("Model artifact references unknown feature " + feature);
+        }
+        return feature;
+    }
+}
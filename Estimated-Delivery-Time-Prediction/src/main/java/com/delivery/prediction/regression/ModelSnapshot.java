@@ -0,0 +1,67 @@
+package com.delivery.prediction.regression;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+
+// Immutable, versioned set of fitted models, published as a unit so a request never mixes
+// models from two different trainings.
+@Getter
+public final class ModelSnapshot {
+
+    private final long version;
+    private final LocalDateTime trainedAt;
+    private final long trainingRows;
+
+    private final RegressionModel simple;
+    private final RegressionModel multiple;
+    private final RegressionModel polynomial;
+
+    // Mean of every feature over the training rows, indexed as in FeatureSchema; stands in for
+    // inputs a caller cannot supply
+    @Getter(AccessLevel.NONE)
+    private final double[] featureMeans;
+
+    public ModelSnapshot(long version, LocalDateTime trainedAt, long trainingRows,
+                         RegressionModel simple, RegressionModel multiple, RegressionModel polynomial,
+                         double[] featureMeans) {
+        if (featureMeans.length != FeatureSchema.SIZE) {
+            throw new IllegalArgumentException("Expected one mean per feature");
+        }
+        this.version = version;
+        this.trainedAt = trainedAt;
+        this.trainingRows = trainingRows;
+        this.simple = simple;
+        this.multiple = multiple;
+        this.polynomial = polynomial;
+        this.featureMeans = featureMeans.clone();
+    }
+
+    // Same models under a registry-assigned version
+    public ModelSnapshot withVersion(long newVersion) {
+        return new ModelSnapshot(newVersion, trainedAt, trainingRows, simple, multiple, polynomial, featureMeans);
+    }
+
+    public double getFeatureMean(int feature) {
+        return featureMeans[feature];
+    }
+
+    // Explanation of the model's prediction relative to the prediction for an average order
+    public PredictionExplanation explain(ModelType type, double[] features) {
+        return get(type).explain(features, featureMeans);
+    }
+
+    public RegressionModel get(ModelType type) {
+        switch (type) {
+            case SIMPLE:
+                return simple;
+            case MULTIPLE:
+                return multiple;
+            case POLYNOMIAL:
+                return polynomial;
+            default:
+                throw new IllegalArgumentException("Unknown model type: " + type);
+        }
+    }
+}
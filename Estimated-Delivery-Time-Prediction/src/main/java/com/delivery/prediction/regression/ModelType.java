@@ -0,0 +1,7 @@
+package com.delivery.prediction.regression;
+
+public enum ModelType {
+    SIMPLE,
+    MULTIPLE,
+    POLYNOMIAL
+}
@@ -0,0 +1,61 @@
+package com.delivery.prediction.regression;
+
+import lombok.Getter;
+
+// Sampling covariance of a fitted model's parameters and its residual variance, computed once at
+// training time and kept with the model, so the uncertainty of a prediction costs one quadratic
+// form over a handful of parameters instead of another pass over the data.
+// The symmetric matrix is stored as its packed lower triangle: (0,0), (1,0), (1,1), (2,0), ...
+@Getter
+public final class ParameterCovariance {
+
+    private final int parameters;
+    private final double[] packed;
+    private final double residualVariance;
+    private final long degreesOfFreedom;
+
+    public ParameterCovariance(int parameters, double[] packed, double residualVariance, long degreesOfFreedom) {
+        if (packed.length != packedLength(parameters)) {
+            throw new IllegalArgumentException("Expected " + packedLength(parameters) + " covariance entries");
+        }
+        this.parameters = parameters;
+        this.packed = packed.clone();
+        this.residualVariance = residualVariance;
+        this.degreesOfFreedom = degreesOfFreedom;
+    }
+
+    // Entries that are not finite (parameters dropped as degenerate) are stored as 0
+    public static ParameterCovariance fromMatrix(double[][] covariance, double residualVariance, long degreesOfFreedom) {
+        double[] packed = new double[packedLength(covariance.length)];
+        int k = 0;
+        for (int i = 0; i < covariance.length; i++) {
+            for (int j = 0; j <= i; j++) {
+                double value = covariance[i][j];
+                packed[k++] = Double.isFinite(value) ? value : 0.0;
+            }
+        }
+        return new ParameterCovariance(covariance.length, packed, residualVariance, degreesOfFreedom);
+    }
+
+    public static int packedLength(int parameters) {
+        return parameters * (parameters + 1) / 2;
+    }
+
+    public double get(int i, int j) {
+        return i >= j ? packed[i * (i + 1) / 2 + j] : packed[j * (j + 1) / 2 + i];
+    }
+
+    // Variance of a new observation at the design vector d (one entry per parameter, 1 for the
+    // intercept): the residual variance plus the variance of the fitted mean, d' C d
+    public double predictionVariance(double[] design) {
+        double variance = 0.0;
+        int k = 0;
+        for (int i = 0; i < parameters; i++) {
+            for (int j = 0; j < i; j++) {
+                variance += 2 * design[i] * design[j] * packed[k++];
+            }
+            variance += design[i] * design[i] * packed[k++];
+        }
+        return residualVariance + variance;
+    }
+}
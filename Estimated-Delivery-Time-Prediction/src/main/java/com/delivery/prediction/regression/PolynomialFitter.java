@@ -0,0 +1,381 @@
+package com.delivery.prediction.regression;
+
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.QRDecomposition;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.SingularMatrixException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveTask;
+import java.util.logging.Logger;
+
+// Least-squares polynomial fit of delivery minutes on one feature column, with the degree chosen
+// by k-fold cross-validation.
+//
+// Everything is computed from sufficient statistics: one parallel pass over the columns collects,
+// per fold, the power sums sum(t^k) and sum(t^k * y) of the standardised input t. Every
+// (degree, fold) candidate is then solved from (degree + 1)^2 of those sums, so cross-validation
+// costs two scans of the data regardless of the number of folds and degrees. Rows streamed from a
+// cursor go through an Accumulator instead, which builds the same sums in a single pass.
+public final class PolynomialFitter {
+
+    private static final Logger logger = Logger.getLogger(PolynomialFitter.class.getName());
+
+    // Rows per leaf task of the parallel scans
+    private static final int LEAF_ROWS = 1 << 15;
+
+    private final int maxDegree;
+    private final int folds;
+    private final ForkJoinPool pool;
+
+    public PolynomialFitter(int maxDegree, int folds, ForkJoinPool pool) {
+        if (maxDegree < 1 || folds < 2) {
+            throw new IllegalArgumentException("Need a maximum degree of at least 1 and at least 2 folds");
+        }
+        this.maxDegree = maxDegree;
+        this.folds = folds;
+        this.pool = pool;
+    }
+
+    // Fit y[0..length) against x[0..length) and return the model of the best cross-validated degree.
+    // x holds the feature at featureIndex of the FeatureSchema.
+    public PolynomialModel fit(int featureIndex, double[] x, double[] y, int length) {
+        double[] moments = pool.invoke(new MomentsTask(x, 0, length));
+        double center = center(moments, length);
+        double scale = scale(moments, length);
+        return fit(featureIndex, center, scale, pool.invoke(new PowerSumsTask(x, y, 0, length, center, scale)), length);
+    }
+
+    // For rows that are not held in memory, e.g. read from a database cursor
+    public Accumulator accumulator() {
+        return new Accumulator();
+    }
+
+    private static double center(double[] moments, long length) {
+        return length == 0 ? 0.0 : moments[0] / length;
+    }
+
+    private static double scale(double[] moments, long length) {
+        double variance = length < 2 ? 0.0 : (moments[1] - moments[0] * center(moments, length)) / (length - 1);
+        return variance > 0 ? Math.sqrt(variance) : 1.0;
+    }
+
+    private PolynomialModel fit(int featureIndex, double center, double scale, PowerSums[] foldSums, long length) {
+        PowerSums total = new PowerSums(maxDegree);
+        for (PowerSums sums : foldSums) {
+            total.merge(sums);
+        }
+
+        int bestDegree = 0;
+        double bestError = Double.POSITIVE_INFINITY;
+        for (int degree = 1; degree <= maxDegree; degree++) {
+            double error = crossValidate(degree, foldSums, total);
+            logger.fine("Polynomial degree " + degree + ": cross-validated MSE " + error);
+            if (error < bestError) {
+                bestError = error;
+                bestDegree = degree;
+            }
+        }
+
+        double[] coefficients = solve(total, bestDegree);
+        if (coefficients == null) {
+            // Not enough distinct inputs for any degree: fall back to the mean
+            coefficients = new double[]{total.count == 0 ? 0.0 : total.ySum() / total.count};
+        }
+        logger.info("Fitted degree " + (coefficients.length - 1) + " polynomial on " + length
+                + " rows (cross-validated MSE " + bestError + ")");
+        return new PolynomialModel(featureIndex, center, scale, coefficients, covariance(total, coefficients));
+    }
+
+    // sigma^2 (T'T)^-1 of the final fit, from the same power sums, where T is the design matrix of
+    // powers of t and sigma^2 = SSE / (n - terms); null when it is not identifiable
+    private static ParameterCovariance covariance(PowerSums sums, double[] coefficients) {
+        int size = coefficients.length;
+        long degreesOfFreedom = sums.count - size;
+        if (degreesOfFreedom <= 0) {
+            return null;
+        }
+        double residualVariance = sums.squaredError(coefficients) / degreesOfFreedom;
+        try {
+            RealMatrix inverse = new QRDecomposition(new Array2DRowRealMatrix(gram(sums, size - 1), false))
+                    .getSolver().getInverse();
+            return ParameterCovariance.fromMatrix(inverse.scalarMultiply(residualVariance).getData(),
+                    residualVariance, degreesOfFreedom);
+        } catch (SingularMatrixException e) {
+            return null;
+        }
+    }
+
+    // Mean squared validation error of the degree over all folds, each fold evaluated as its own task
+    private double crossValidate(int degree, PowerSums[] foldSums, PowerSums total) {
+        List<Callable<double[]>> tasks = new ArrayList<>(folds);
+        for (PowerSums validation : foldSums) {
+            tasks.add(() -> {
+                PowerSums training = total.copy();
+                training.subtract(validation);
+                if (validation.count == 0 || training.count <= degree + 1) {
+                    return null;
+                }
+                double[] coefficients = solve(training, degree);
+                return coefficients == null ? null : new double[]{validation.squaredError(coefficients), validation.count};
+            });
+        }
+
+        double squaredError = 0.0;
+        long rows = 0;
+        try {
+            for (Future<double[]> result : pool.invokeAll(tasks)) {
+                double[] fold = result.get();
+                if (fold == null) {
+                    return Double.POSITIVE_INFINITY;
+                }
+                squaredError += fold[0];
+                rows += (long) fold[1];
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Double.POSITIVE_INFINITY;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Cross-validation failed", e.getCause());
+        }
+        return squaredError / rows;
+    }
+
+    // Solve the normal equations G b = r with G[i][j] = sum(t^(i+j)) and r[i] = sum(t^i * y);
+    // null when the system is singular
+    private static double[] solve(PowerSums sums, int degree) {
+        if (sums.count <= degree) {
+            return null;
+        }
+        double[] moments = new double[degree + 1];
+        System.arraycopy(sums.tyPowers, 0, moments, 0, moments.length);
+        try {
+            return new QRDecomposition(new Array2DRowRealMatrix(gram(sums, degree), false)).getSolver()
+                    .solve(new ArrayRealVector(moments, false)).toArray();
+        } catch (SingularMatrixException e) {
+            return null;
+        }
+    }
+
+    // G[i][j] = sum(t^(i+j)) for i, j = 0..degree
+    private static double[][] gram(PowerSums sums, int degree) {
+        int size = degree + 1;
+        double[][] gram = new double[size][size];
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                gram[i][j] = sums.tPowers[i + j];
+            }
+        }
+        return gram;
+    }
+
+    // Collects the per-fold power sums one row at a time, in memory independent of the row count.
+    // t is standardised with the mean and standard deviation of the first rows instead of all of
+    // them: the fitted polynomial does not depend on that choice, which only keeps the sums well
+    // scaled, and the model records the center and scale it was fitted with.
+    public final class Accumulator {
+
+        private static final int WARMUP_ROWS = 4096;
+
+        private final double[] x = new double[WARMUP_ROWS];
+        private final double[] y = new double[WARMUP_ROWS];
+        private final PowerSums[] foldSums = new PowerSums[folds];
+        private long rows;
+        private double center;
+        private double scale;
+        private boolean standardised;
+
+        private Accumulator() {
+            for (int fold = 0; fold < folds; fold++) {
+                foldSums[fold] = new PowerSums(maxDegree);
+            }
+        }
+
+        public void add(double xValue, double yValue) {
+            if (!standardised) {
+                if (rows < WARMUP_ROWS) {
+                    x[(int) rows] = xValue;
+                    y[(int) rows] = yValue;
+                    rows++;
+                    return;
+                }
+                standardise();
+            }
+            // Same fold assignment as PowerSumsTask: row i belongs to fold i % folds
+            foldSums[(int) (rows % folds)].add((xValue - center) / scale, yValue);
+            rows++;
+        }
+
+        // Fix center and scale from the buffered rows and fold those rows in
+        private void standardise() {
+            int buffered = (int) rows;
+            double[] moments = new MomentsTask(x, 0, buffered).compute();
+            center = center(moments, buffered);
+            scale = scale(moments, buffered);
+            for (int row = 0; row < buffered; row++) {
+                foldSums[row % folds].add((x[row] - center) / scale, y[row]);
+            }
+            standardised = true;
+        }
+
+        // Model of the best cross-validated degree over every row added
+        public PolynomialModel fit(int featureIndex) {
+            if (!standardised) {
+                standardise();
+            }
+            return PolynomialFitter.this.fit(featureIndex, center, scale, foldSums, rows);
+        }
+    }
+
+    // Power sums of one fold up to maxDegree, mergeable across row ranges
+    private static final class PowerSums {
+
+        private final double[] tPowers;   // sum(t^k), k = 0..2 * maxDegree
+        private final double[] tyPowers;  // sum(t^k * y), k = 0..maxDegree
+        private double ySquares;
+        private long count;
+
+        private PowerSums(int maxDegree) {
+            tPowers = new double[2 * maxDegree + 1];
+            tyPowers = new double[maxDegree + 1];
+        }
+
+        private void add(double t, double y) {
+            double power = 1.0;
+            for (int k = 0; k < tPowers.length; k++) {
+                tPowers[k] += power;
+                if (k < tyPowers.length) {
+                    tyPowers[k] += power * y;
+                }
+                power *= t;
+            }
+            ySquares += y * y;
+            count++;
+        }
+
+        private void merge(PowerSums other) {
+            combine(other, 1.0);
+        }
+
+        private void subtract(PowerSums other) {
+            combine(other, -1.0);
+        }
+
+        private void combine(PowerSums other, double sign) {
+            for (int k = 0; k < tPowers.length; k++) {
+                tPowers[k] += sign * other.tPowers[k];
+            }
+            for (int k = 0; k < tyPowers.length; k++) {
+                tyPowers[k] += sign * other.tyPowers[k];
+            }
+            ySquares += sign * other.ySquares;
+            count += (long) sign * other.count;
+        }
+
+        private PowerSums copy() {
+            PowerSums copy = new PowerSums(tyPowers.length - 1);
+            copy.merge(this);
+            return copy;
+        }
+
+        private double ySum() {
+            return tyPowers[0];
+        }
+
+        // sum((y - p(t))^2) = sum(y^2) - 2 b.r + b'Gb, expanded over these sums
+        private double squaredError(double[] coefficients) {
+            double error = ySquares;
+            for (int i = 0; i < coefficients.length; i++) {
+                error -= 2 * coefficients[i] * tyPowers[i];
+                for (int j = 0; j < coefficients.length; j++) {
+                    error += coefficients[i] * coefficients[j] * tPowers[i + j];
+                }
+            }
+            return Math.max(error, 0.0);
+        }
+    }
+
+    // Sum and sum of squares of x over a row range
+    private static final class MomentsTask extends RecursiveTask<double[]> {
+
+        private final double[] x;
+        private final int from;
+        private final int to;
+
+        private MomentsTask(double[] x, int from, int to) {
+            this.x = x;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected double[] compute() {
+            if (to - from > LEAF_ROWS) {
+                int middle = (from + to) >>> 1;
+                MomentsTask left = new MomentsTask(x, from, middle);
+                left.fork();
+                double[] right = new MomentsTask(x, middle, to).compute();
+                double[] result = left.join();
+                result[0] += right[0];
+                result[1] += right[1];
+                return result;
+            }
+            double sum = 0.0;
+            double squares = 0.0;
+            for (int row = from; row < to; row++) {
+                sum += x[row];
+                squares += x[row] * x[row];
+            }
+            return new double[]{sum, squares};
+        }
+    }
+
+    // Per-fold power sums over a row range; row i belongs to fold i % folds
+    private final class PowerSumsTask extends RecursiveTask<PowerSums[]> {
+
+        private final double[] x;
+        private final double[] y;
+        private final int from;
+        private final int to;
+        private final double center;
+        private final double scale;
+
+        private PowerSumsTask(double[] x, double[] y, int from, int to, double center, double scale) {
+            this.x = x;
+            this.y = y;
+            this.from = from;
+            this.to = to;
+            this.center = center;
+            this.scale = scale;
+        }
+
+        @Override
+        protected PowerSums[] compute() {
+            if (to - from > LEAF_ROWS) {
+                int middle = (from + to) >>> 1;
+                PowerSumsTask left = new PowerSumsTask(x, y, from, middle, center, scale);
+                left.fork();
+                PowerSums[] right = new PowerSumsTask(x, y, middle, to, center, scale).compute();
+                PowerSums[] result = left.join();
+                for (int fold = 0; fold < folds; fold++) {
+                    result[fold].merge(right[fold]);
+                }
+                return result;
+            }
+            PowerSums[] sums = new PowerSums[folds];
+            for (int fold = 0; fold < folds; fold++) {
+                sums[fold] = new PowerSums(maxDegree);
+            }
+            for (int row = from; row < to; row++) {
+                sums[row % folds].add((x[row] - center) / scale, y[row]);
+            }
+            return sums;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.delivery.prediction.regression;
+
+import lombok.Getter;
+
+// Polynomial in a single feature, coefficients in ascending order of power.
+// The polynomial is evaluated on the standardised value (x - center) / scale, which keeps the
+// fit well conditioned for inputs in the thousands (driving duration is in seconds).
+@Getter
+public final class PolynomialModel implements RegressionModel {
+
+    private final int featureIndex;
+    private final double center;
+    private final double scale;
+    private final double[] coefficients;
+    // Covariance of the coefficients (on the standardised input), or null when unknown
+    private final ParameterCovariance covariance;
+
+    public PolynomialModel(int featureIndex, double[] coefficients) {
+        this(featureIndex, 0.0, 1.0, coefficients);
+    }
+
+    public PolynomialModel(int featureIndex, double center, double scale, double[] coefficients) {
+        this(featureIndex, center, scale, coefficients, null);
+    }
+
+    public PolynomialModel(int featureIndex, double center, double scale, double[] coefficients,
+                           ParameterCovariance covariance) {
+        if (!(scale > 0)) {
+            throw new IllegalArgumentException("Scale must be positive");
+        }
+        if (covariance != null && covariance.getParameters() != coefficients.length) {
+            throw new IllegalArgumentException("Expected the covariance of every coefficient");
+        }
+        this.featureIndex = featureIndex;
+        this.center = center;
+        this.scale = scale;
+        this.coefficients = coefficients.clone();
+        this.covariance = covariance;
+    }
+
+    public int getDegree() {
+        return coefficients.length - 1;
+    }
+
+    @Override
+    public double predict(double[] features) {
+        // Horner's scheme
+        double x = (features[featureIndex] - center) / scale;
+        double result = 0.0;
+        for (int i = coefficients.length - 1; i >= 0; i--) {
+            result = result * x + coefficients[i];
+        }
+        return result;
+    }
+
+    @Override
+    public PredictionExplanation explain(double[] features, double[] baseline) {
+        double prediction = predict(features);
+        double base = predict(baseline);
+        double standardError = Double.NaN;
+        long degreesOfFreedom = 0;
+        if (covariance != null) {
+            double x = (features[featureIndex] - center) / scale;
+            double[] design = new double[coefficients.length];
+            double power = 1.0;
+            for (int i = 0; i < design.length; i++) {
+                design[i] = power;
+                power *= x;
+            }
+            standardError = Math.sqrt(covariance.predictionVariance(design));
+            degreesOfFreedom = covariance.getDegreesOfFreedom();
+        }
+        return new PredictionExplanation(prediction, base, new int[]{featureIndex}, new double[]{prediction - base},
+                standardError, degreesOfFreedom);
+    }
+
+    @Override
+    public void predictBatch(double[][] columns, int offset, int length, double[] out) {
+        double[] x = columns[featureIndex];
+        for (int row = 0; row < length; row++) {
+            double value = (x[offset + row] - center) / scale;
+            double result = 0.0;
+            for (int i = coefficients.length - 1; i >= 0; i--) {
+                result = result * value + coefficients[i];
+            }
+            out[row] = result;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.delivery.prediction.regression;
+
+import lombok.Getter;
+
+// A prediction split into the prediction at a baseline feature vector (the training means) and
+// the minutes each feature adds on top of it, with the standard error of a new observation.
+// standardError is NaN when the model has no parameter covariance.
+@Getter
+public final class PredictionExplanation {
+
+    private final double prediction;
+    private final double baseline;
+    private final int[] featureIndexes;
+    private final double[] contributions;
+    private final double standardError;
+    private final long degreesOfFreedom;
+
+    public PredictionExplanation(double prediction, double baseline, int[] featureIndexes, double[] contributions,
+                                 double standardError, long degreesOfFreedom) {
+        this.prediction = prediction;
+        this.baseline = baseline;
+        this.featureIndexes = featureIndexes;
+        this.contributions = contributions;
+        this.standardError = standardError;
+        this.degreesOfFreedom = degreesOfFreedom;
+    }
+}
@@ -0,0 +1,29 @@
+package com.delivery.prediction.regression;
+
+// Common scoring contract for the three regression flavours.
+// Implementations are immutable and evaluate a feature vector laid out as in FeatureSchema
+// without allocating, so callers can reuse one double[] across many rows.
+public interface RegressionModel {
+
+    double predict(double[] features);
+
+    // Score rows [offset, offset + length) of a column-major feature matrix (columns[feature][row]);
+    // the prediction for row offset + i goes to out[i]. Implementations override this with
+    // column-at-a-time loops the JIT can vectorise.
+    default void predictBatch(double[][] columns, int offset, int length, double[] out) {
+        double[] features = new double[columns.length];
+        for (int i = 0; i < length; i++) {
+            for (int feature = 0; feature < columns.length; feature++) {
+                features[feature] = columns[feature][offset + i];
+            }
+            out[i] = predict(features);
+        }
+    }
+
+    // The prediction relative to the one at baseline (a feature vector such as the training
+    // means), with per-feature contributions and, when the model carries its parameter
+    // covariance, the standard error of a new observation
+    default PredictionExplanation explain(double[] features, double[] baseline) {
+        return new PredictionExplanation(predict(features), predict(baseline), new int[0], new double[0], Double.NaN, 0);
+    }
+}
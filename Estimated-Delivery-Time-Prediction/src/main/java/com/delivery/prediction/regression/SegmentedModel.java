@@ -0,0 +1,96 @@
+package com.delivery.prediction.regression;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+// Routes each row to the model fitted on its segment, falling back to a global model for segments
+// that were too sparse to get one. A segment is a market, or a (market, store category) pair;
+// rows try their category segment first, then their market, then the fallback.
+//
+// Segments are found through an open-addressing table of primitive long keys, so routing costs a
+// hash and a probe or two per row without boxing or allocation.
+@Getter
+public final class SegmentedModel implements RegressionModel {
+
+    // Category half of the key of a market-wide segment; never produced by FeatureSchema.categoryCode
+    public static final int ANY_CATEGORY = Integer.MIN_VALUE;
+
+    private final RegressionModel fallback;
+    private final long[] keys;
+    private final RegressionModel[] models;
+
+    // slots[hash(key)] holds index + 1 of the key in keys/models, 0 for an empty slot
+    @Getter(AccessLevel.NONE)
+    private final int[] slots;
+    @Getter(AccessLevel.NONE)
+    private final int shift;
+
+    public SegmentedModel(RegressionModel fallback, long[] keys, RegressionModel[] models) {
+        if (keys.length != models.length) {
+            throw new IllegalArgumentException("Expected one model per segment key");
+        }
+        this.fallback = fallback;
+        this.keys = keys.clone();
+        this.models = models.clone();
+
+        // Power-of-two table at most half full
+        int capacity = Integer.highestOneBit(Math.max(2, keys.length) * 2 - 1) << 1;
+        this.slots = new int[capacity];
+        this.shift = Long.SIZE - Integer.numberOfTrailingZeros(capacity);
+        for (int i = 0; i < keys.length; i++) {
+            int slot = hash(keys[i]);
+            while (slots[slot] != 0) {
+                if (this.keys[slots[slot] - 1] == keys[i]) {
+                    throw new IllegalArgumentException("Duplicate segment key " + keys[i]);
+                }
+                slot = (slot + 1) & (capacity - 1);
+            }
+            slots[slot] = i + 1;
+        }
+    }
+
+    public static long key(int marketId, int category) {
+        return ((long) marketId << 32) | (category & 0xFFFFFFFFL);
+    }
+
+    public int getSegments() {
+        return keys.length;
+    }
+
+    // Model a feature vector is scored with
+    public RegressionModel route(double[] features) {
+        int marketId = (int) features[FeatureSchema.MARKET_ID];
+        RegressionModel model = find(key(marketId, (int) features[FeatureSchema.STORE_CATEGORY]));
+        if (model == null) {
+            model = find(key(marketId, ANY_CATEGORY));
+        }
+        return model == null ? fallback : model;
+    }
+
+    @Override
+    public double predict(double[] features) {
+        return route(features).predict(features);
+    }
+
+    // Explained by the segment's own model, baseline included
+    @Override
+    public PredictionExplanation explain(double[] features, double[] baseline) {
+        return route(features).explain(features, baseline);
+    }
+
+    private RegressionModel find(long key) {
+        int mask = slots.length - 1;
+        for (int slot = hash(key); slots[slot] != 0; slot = (slot + 1) & mask) {
+            int index = slots[slot] - 1;
+            if (keys[index] == key) {
+                return models[index];
+            }
+        }
+        return null;
+    }
+
+    // Fibonacci hashing: the top bits of key * 2^64 / phi
+    private int hash(long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+    }
+}
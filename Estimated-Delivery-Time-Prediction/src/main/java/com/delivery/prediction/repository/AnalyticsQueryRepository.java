@@ -0,0 +1,130 @@
+package com.delivery.prediction.repository;
+
+import com.delivery.prediction.analytics.DeliveryTimeAggregate;
+import com.delivery.prediction.regression.FeatureSchema;
+import com.delivery.prediction.regression.LinearModel;
+import com.delivery.prediction.regression.ModelType;
+import com.delivery.prediction.regression.PolynomialModel;
+import com.delivery.prediction.regression.RegressionModel;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Aggregate queries evaluated by the database, returning one row per market.
+// Linear and polynomial models are rendered as SQL expressions with their fitted
+// coefficients inlined, so their predictions are summed without transferring any rows.
+@Repository
+public class AnalyticsQueryRepository {
+
+    private static final String ACTUAL_MINUTES = "TIMESTAMPDIFF(MINUTE, created_at, actual_delivery_time)";
+
+    // porter_data column behind each FeatureSchema index
+    private static final String[] FEATURE_COLUMNS = new String[FeatureSchema.SIZE];
+
+    static {
+        FEATURE_COLUMNS[FeatureSchema.TOTAL_ITEMS] = "total_items";
+        FEATURE_COLUMNS[FeatureSchema.SUBTOTAL] = "subtotal";
+        FEATURE_COLUMNS[FeatureSchema.DRIVING_DURATION] = "estimated_store_to_consumer_driving_duration";
+        FEATURE_COLUMNS[FeatureSchema.MARKET_ID] = "market_id";
+        // NULL supply counts take the model's fill values, as in LinearModel
+        FEATURE_COLUMNS[FeatureSchema.ONSHIFT_DASHERS] = "total_onshift_dashers";
+        FEATURE_COLUMNS[FeatureSchema.BUSY_DASHERS] = "total_busy_dashers";
+        FEATURE_COLUMNS[FeatureSchema.OUTSTANDING_ORDERS] = "total_outstanding_orders";
+        // Category codes are computed in Java, so models reading them are never pushed down
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // SQL expression computing the model's prediction for a porter_data row,
+    // or null when the model cannot be evaluated by the database
+    public static String toSqlExpression(RegressionModel model) {
+        if (model instanceof LinearModel) {
+            LinearModel linear = (LinearModel) model;
+            StringBuilder expression = new StringBuilder("(").append(literal(linear.getIntercept()));
+            double[] coefficients = linear.getCoefficients();
+            int[] featureIndexes = linear.getFeatureIndexes();
+            for (int i = 0; i < coefficients.length; i++) {
+                String column = column(featureIndexes[i]);
+                if (column == null || !Double.isFinite(coefficients[i])) {
+                    return null;
+                }
+                double fill = linear.fillValue(i);
+                if (Double.isFinite(fill)) {
+                    column = "COALESCE(" + column + ", " + literal(fill) + ")";
+                }
+                expression.append(" + ").append(literal(coefficients[i])).append(" * ").append(column);
+            }
+            return Double.isFinite(linear.getIntercept()) ? expression.append(")").toString() : null;
+        }
+
+        if (model instanceof PolynomialModel) {
+            // Horner form: c0 + x * (c1 + x * (c2 + ...)) on x = (column - center) / scale
+            PolynomialModel polynomial = (PolynomialModel) model;
+            String column = column(polynomial.getFeatureIndex());
+            double[] coefficients = polynomial.getCoefficients();
+            if (column == null || coefficients.length == 0
+                    || !Double.isFinite(polynomial.getCenter()) || !Double.isFinite(polynomial.getScale())) {
+                return null;
+            }
+            column = "((" + column + " - " + literal(polynomial.getCenter()) + ") / " + literal(polynomial.getScale()) + ")";
+            String expression = literal(coefficients[coefficients.length - 1]);
+            for (int i = coefficients.length - 2; i >= 0; i--) {
+                if (!Double.isFinite(coefficients[i])) {
+                    return null;
+                }
+                expression = "(" + literal(coefficients[i]) + " + " + column + " * " + expression + ")";
+            }
+            return Double.isFinite(coefficients[coefficients.length - 1]) ? expression : null;
+        }
+
+        return null;
+    }
+
+    // Count, total and sum of squares of the actual minutes, and the total and sum of squares of
+    // each model expression, per market
+    public Map<Integer, DeliveryTimeAggregate> aggregateByMarket(Map<ModelType, String> modelExpressions) {
+        List<ModelType> types = new ArrayList<>(modelExpressions.keySet());
+        StringBuilder sql = new StringBuilder("SELECT market_id, COUNT(*), ")
+                .append(sums(ACTUAL_MINUTES));
+        for (ModelType type : types) {
+            sql.append(", ").append(sums(modelExpressions.get(type)));
+        }
+        sql.append(" FROM porter_data WHERE ").append(TrainingDataRepository.TRAINABLE_ROWS).append(" GROUP BY market_id");
+
+        Map<Integer, DeliveryTimeAggregate> markets = new HashMap<>();
+        jdbcTemplate.query(sql.toString(), (RowCallbackHandler) rs -> {
+            int marketId = rs.getInt(1);
+            if (rs.wasNull()) {
+                marketId = TrainingDataRepository.UNKNOWN_MARKET;
+            }
+            DeliveryTimeAggregate aggregate = new DeliveryTimeAggregate(rs.getLong(2), rs.getDouble(3), rs.getDouble(4));
+            for (int i = 0; i < types.size(); i++) {
+                aggregate.addPredictedSums(types.get(i), rs.getDouble(5 + 2 * i), rs.getDouble(6 + 2 * i));
+            }
+            markets.put(marketId, aggregate);
+        });
+        return markets;
+    }
+
+    // SUM(x), SUM(x * x); squared in DOUBLE so integer minutes cannot overflow
+    private static String sums(String expression) {
+        return "SUM(" + expression + "), SUM(1E0 * (" + expression + ") * (" + expression + "))";
+    }
+
+    private static String column(int featureIndex) {
+        return featureIndex >= 0 && featureIndex < FEATURE_COLUMNS.length ? FEATURE_COLUMNS[featureIndex] : null;
+    }
+
+    private static String literal(double value) {
+        // Scientific notation keeps the literal a DOUBLE in both MySQL and H2
+        String text = Double.toString(value);
+        return text.contains("E") ? text : text + "E0";
+    }
+}
@@ -0,0 +1,68 @@
+package com.delivery.prediction.repository;
+
+import com.delivery.prediction.model.Prediction;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.List;
+
+// Bulk insert path for porter_data.
+// Prediction.id is an IDENTITY column, which makes Hibernate flush every persist on its own;
+// going through JdbcTemplate.batchUpdate lets the database assign the keys while the rows
+// still travel in batches (rewriteBatchedStatements=true turns them into multi-row INSERTs on MySQL).
+@Repository
+public class PredictionBatchWriter {
+
+    private static final String INSERT_SQL = "INSERT INTO porter_data (market_id, created_at, actual_delivery_time, "
+            + "store_primary_category, order_protocol, total_items, subtotal, num_distinct_items, min_item_price, "
+            + "max_item_price, total_onshift_dashers, total_busy_dashers, total_outstanding_orders, "
+            + "estimated_store_to_consumer_driving_duration, order_id, predicted_delivery_time) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String UPDATE_ACTUAL_SQL = "UPDATE porter_data SET actual_delivery_time = ? WHERE id = ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${persistence.batch-size:500}")
+    private int batchSize;
+
+    public void insertAll(List<Prediction> predictions) {
+        if (predictions.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, predictions, batchSize, (ps, data) -> {
+            ps.setObject(1, data.getMarketId(), Types.INTEGER);
+            ps.setTimestamp(2, data.getCreatedAt() == null ? null : Timestamp.valueOf(data.getCreatedAt()));
+            ps.setTimestamp(3, data.getActualDeliveryTime() == null ? null : Timestamp.valueOf(data.getActualDeliveryTime()));
+            ps.setString(4, data.getStorePrimaryCategory());
+            ps.setObject(5, data.getOrderProtocol(), Types.INTEGER);
+            ps.setObject(6, data.getTotalItems(), Types.INTEGER);
+            ps.setObject(7, data.getSubtotal(), Types.DOUBLE);
+            ps.setObject(8, data.getNumDistinctItems(), Types.INTEGER);
+            ps.setObject(9, data.getMinItemPrice(), Types.DOUBLE);
+            ps.setObject(10, data.getMaxItemPrice(), Types.DOUBLE);
+            ps.setObject(11, data.getTotalOnshiftDashers(), Types.INTEGER);
+            ps.setObject(12, data.getTotalBusyDashers(), Types.INTEGER);
+            ps.setObject(13, data.getTotalOutstandingOrders(), Types.INTEGER);
+            ps.setObject(14, data.getEstimatedStoreToConsumerDrivingDuration(), Types.INTEGER);
+            ps.setString(15, data.getOrderId());
+            ps.setTimestamp(16, data.getPredictedDeliveryTime() == null ? null : Timestamp.valueOf(data.getPredictedDeliveryTime()));
+        });
+    }
+
+    // Record the delivery outcome of existing rows, by id
+    public void updateActualDeliveryTimes(List<Prediction> predictions) {
+        if (predictions.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(UPDATE_ACTUAL_SQL, predictions, batchSize, (ps, data) -> {
+            ps.setTimestamp(1, Timestamp.valueOf(data.getActualDeliveryTime()));
+            ps.setLong(2, data.getId());
+        });
+    }
+}
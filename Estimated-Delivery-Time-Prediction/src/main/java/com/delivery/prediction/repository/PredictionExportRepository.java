@@ -0,0 +1,152 @@
+package com.delivery.prediction.repository;
+
+import com.delivery.prediction.model.Prediction;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Read access to porter_data for the predictions API: keyset pages (id > ? ORDER BY id LIMIT ?,
+// which walks the primary key instead of skipping OFFSET rows) and full exports streamed from a
+// forward-only cursor. Optional filters on market and created_at range apply to both.
+// Also looks rows up by order id, or by order time for feedback without one, for delivery feedback.
+@Repository
+public class PredictionExportRepository {
+
+    private static final String COLUMNS = "id, market_id, created_at, actual_delivery_time, store_primary_category, "
+            + "order_protocol, total_items, subtotal, num_distinct_items, min_item_price, max_item_price, "
+            + "total_onshift_dashers, total_busy_dashers, total_outstanding_orders, "
+            + "estimated_store_to_consumer_driving_duration, order_id, predicted_delivery_time";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${training.fetch-size:1000}")
+    private int fetchSize;
+
+    // Receives one exported row
+    @FunctionalInterface
+    public interface PredictionRowHandler {
+        void accept(Prediction row) throws Exception;
+    }
+
+    // Up to limit rows with id > afterId, in id order
+    public List<Prediction> findPage(long afterId, int limit, Integer marketId, LocalDateTime from, LocalDateTime to) {
+        List<Object> args = new ArrayList<>();
+        args.add(afterId);
+        String sql = "SELECT " + COLUMNS + " FROM porter_data WHERE id > ?" + filters(marketId, from, to, args)
+                + " ORDER BY id LIMIT ?";
+        args.add(limit);
+        return jdbcTemplate.query(sql, (rs, rowNum) -> toPrediction(rs), args.toArray());
+    }
+
+    // Stream every matching row in id order through the handler and return the number of rows
+    public long streamAll(Integer marketId, LocalDateTime from, LocalDateTime to, PredictionRowHandler handler) {
+        List<Object> args = new ArrayList<>();
+        String sql = "SELECT " + COLUMNS + " FROM porter_data WHERE 1 = 1" + filters(marketId, from, to, args) + " ORDER BY id";
+        long[] rows = {0};
+
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(fetchSize);
+            for (int i = 0; i < args.size(); i++) {
+                statement.setObject(i + 1, args.get(i));
+            }
+            return statement;
+        }, (RowCallbackHandler) rs -> {
+            try {
+                handler.accept(toPrediction(rs));
+            } catch (SQLException | RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                // Typically the client went away mid-export; abort the query
+                throw new IllegalStateException("Export aborted: " + e.getMessage(), e);
+            }
+            rows[0]++;
+        });
+
+        return rows[0];
+    }
+
+    // Latest row of each of the given orders, by order id
+    public Map<String, Prediction> findLatestByOrderIds(Collection<String> orderIds) {
+        Map<String, Prediction> latest = new HashMap<>();
+        if (orderIds.isEmpty()) {
+            return latest;
+        }
+        String sql = "SELECT " + COLUMNS + " FROM porter_data WHERE order_id IN ("
+                + String.join(", ", Collections.nCopies(orderIds.size(), "?")) + ") ORDER BY id";
+        jdbcTemplate.query(sql, (RowCallbackHandler) rs -> {
+            Prediction row = toPrediction(rs);
+            latest.put(row.getOrderId(), row);
+        }, orderIds.toArray());
+        return latest;
+    }
+
+    // Delivered rows placed at any of the given times, for matching feedback that has no order id
+    public List<Prediction> findDeliveredByCreatedAt(Collection<LocalDateTime> createdAts) {
+        if (createdAts.isEmpty()) {
+            return List.of();
+        }
+        List<Object> args = new ArrayList<>();
+        for (LocalDateTime createdAt : createdAts) {
+            args.add(Timestamp.valueOf(createdAt));
+        }
+        String sql = "SELECT " + COLUMNS + " FROM porter_data WHERE created_at IN ("
+                + String.join(", ", Collections.nCopies(args.size(), "?")) + ") AND actual_delivery_time IS NOT NULL";
+        return jdbcTemplate.query(sql, (rs, rowNum) -> toPrediction(rs), args.toArray());
+    }
+
+    private static String filters(Integer marketId, LocalDateTime from, LocalDateTime to, List<Object> args) {
+        StringBuilder where = new StringBuilder();
+        if (marketId != null) {
+            where.append(" AND market_id = ?");
+            args.add(marketId);
+        }
+        if (from != null) {
+            where.append(" AND created_at >= ?");
+            args.add(Timestamp.valueOf(from));
+        }
+        if (to != null) {
+            where.append(" AND created_at < ?");
+            args.add(Timestamp.valueOf(to));
+        }
+        return where.toString();
+    }
+
+    private static Prediction toPrediction(ResultSet rs) throws SQLException {
+        return Prediction.builder()
+                .id(rs.getLong(1))
+                .marketId(rs.getObject(2, Integer.class))
+                .createdAt(rs.getObject(3, LocalDateTime.class))
+                .actualDeliveryTime(rs.getObject(4, LocalDateTime.class))
+                .storePrimaryCategory(rs.getString(5))
+                .orderProtocol(rs.getObject(6, Integer.class))
+                .totalItems(rs.getObject(7, Integer.class))
+                .subtotal(rs.getObject(8, Double.class))
+                .numDistinctItems(rs.getObject(9, Integer.class))
+                .minItemPrice(rs.getObject(10, Double.class))
+                .maxItemPrice(rs.getObject(11, Double.class))
+                .totalOnshiftDashers(rs.getObject(12, Integer.class))
+                .totalBusyDashers(rs.getObject(13, Integer.class))
+                .totalOutstandingOrders(rs.getObject(14, Integer.class))
+                .estimatedStoreToConsumerDrivingDuration(rs.getObject(15, Integer.class))
+                .orderId(rs.getString(16))
+                .predictedDeliveryTime(rs.getObject(17, LocalDateTime.class))
+                .build();
+    }
+}
@@ -0,0 +1,192 @@
+package com.delivery.prediction.repository;
+
+import com.delivery.prediction.regression.FeatureSchema;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+// Forward-only, read-only access to porter_data for model training.
+// Rows are handed to the caller one at a time straight from the JDBC cursor, so memory
+// stays constant in the number of rows (MySQL needs useCursorFetch=true to honour the fetch size).
+@Repository
+public class TrainingDataRepository {
+
+    // Rows that carry every model input and a delivery outcome
+    public static final String TRAINABLE_ROWS =
+            "created_at IS NOT NULL AND actual_delivery_time IS NOT NULL AND total_items IS NOT NULL "
+                    + "AND subtotal IS NOT NULL AND estimated_store_to_consumer_driving_duration IS NOT NULL";
+
+    private static final String TRAINING_COLUMNS =
+            "market_id, created_at, actual_delivery_time, total_items, subtotal, estimated_store_to_consumer_driving_duration, "
+                    + "store_primary_category, total_onshift_dashers, total_busy_dashers, total_outstanding_orders";
+
+    private static final String TRAINING_ROWS_SQL =
+            "SELECT " + TRAINING_COLUMNS + " FROM porter_data WHERE " + TRAINABLE_ROWS;
+
+    // Rows appended after a known id, in id order; the id is appended as the last column
+    private static final String ROWS_AFTER_SQL =
+            "SELECT " + TRAINING_COLUMNS + ", id FROM porter_data WHERE id > ? AND " + TRAINABLE_ROWS + " ORDER BY id";
+
+    // Walks the market_id index from a key onwards; the id is appended as the last column
+    private static final String MARKET_BLOCK_SQL =
+            "SELECT " + TRAINING_COLUMNS + ", id FROM porter_data WHERE market_id = ? AND id >= ? AND " + TRAINABLE_ROWS
+                    + " ORDER BY id LIMIT ?";
+
+    // Trainable rows only, the same population MARKET_BLOCK_SQL reads from
+    private static final String MARKET_KEY_RANGES_SQL =
+            "SELECT market_id, COUNT(*), MIN(id), MAX(id) FROM porter_data WHERE market_id IS NOT NULL AND "
+                    + TRAINABLE_ROWS + " GROUP BY market_id";
+
+    // Order time and outcome of every row up to an id, for seeding time-bucketed statistics
+    private static final String DELIVERY_TIMES_SQL =
+            "SELECT market_id, created_at, actual_delivery_time FROM porter_data "
+                    + "WHERE id <= ? AND created_at IS NOT NULL AND actual_delivery_time IS NOT NULL";
+
+    private static final String MAX_ID_SQL = "SELECT COALESCE(MAX(id), 0) FROM porter_data";
+
+    // Passed to handlers for rows without a market_id
+    public static final int UNKNOWN_MARKET = FeatureSchema.UNKNOWN_MARKET;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${training.fetch-size:1000}")
+    private int fetchSize;
+
+    // Receives one training row; the features array is reused between calls
+    @FunctionalInterface
+    public interface TrainingRowHandler {
+        void accept(int marketId, double[] features, double deliveryMinutes);
+    }
+
+    // Stream every trainable row through the handler and return the number of rows read
+    public long streamTrainingRows(TrainingRowHandler handler) {
+        double[] features = FeatureSchema.newVector();
+        long[] rows = {0};
+
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(TRAINING_ROWS_SQL,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(fetchSize);
+            return statement;
+        }, (RowCallbackHandler) rs -> {
+            readRow(rs, features, handler);
+            rows[0]++;
+        });
+
+        return rows[0];
+    }
+
+    // Like TrainingRowHandler, with the row's primary key
+    @FunctionalInterface
+    public interface KeyedRowHandler {
+        void accept(long id, int marketId, double[] features, double deliveryMinutes);
+    }
+
+    // Stream trainable rows with id > afterId in id order and return the number of rows read
+    public long streamRowsAfter(long afterId, KeyedRowHandler handler) {
+        double[] features = FeatureSchema.newVector();
+        long[] rows = {0};
+
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(ROWS_AFTER_SQL,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(fetchSize);
+            statement.setLong(1, afterId);
+            return statement;
+        }, (RowCallbackHandler) rs -> {
+            long id = rs.getLong(11);
+            readRow(rs, features, (marketId, rowFeatures, deliveryMinutes) ->
+                    handler.accept(id, marketId, rowFeatures, deliveryMinutes));
+            rows[0]++;
+        });
+
+        return rows[0];
+    }
+
+    // Receives the order time and delivery minutes of one row
+    @FunctionalInterface
+    public interface DeliveryTimeHandler {
+        void accept(int marketId, LocalDateTime createdAt, double deliveryMinutes);
+    }
+
+    public long findMaxId() {
+        Long maxId = jdbcTemplate.queryForObject(MAX_ID_SQL, Long.class);
+        return maxId == null ? 0 : maxId;
+    }
+
+    // Stream the order time and delivery minutes of every row with id <= maxId and return the number of rows read
+    public long streamDeliveryTimes(long maxId, DeliveryTimeHandler handler) {
+        long[] rows = {0};
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(DELIVERY_TIMES_SQL,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(fetchSize);
+            statement.setLong(1, maxId);
+            return statement;
+        }, (RowCallbackHandler) rs -> {
+            int marketId = rs.getInt(1);
+            if (rs.wasNull()) {
+                marketId = UNKNOWN_MARKET;
+            }
+            LocalDateTime createdAt = rs.getObject(2, LocalDateTime.class);
+            handler.accept(marketId, createdAt, Duration.between(createdAt, rs.getObject(3, LocalDateTime.class)).toMinutes());
+            rows[0]++;
+        });
+        return rows[0];
+    }
+
+    // Row count and id range of every market: {count, minId, maxId}
+    public Map<Integer, long[]> findMarketKeyRanges() {
+        Map<Integer, long[]> ranges = new HashMap<>();
+        jdbcTemplate.query(MARKET_KEY_RANGES_SQL, (RowCallbackHandler) rs ->
+                ranges.put(rs.getInt(1), new long[]{rs.getLong(2), rs.getLong(3), rs.getLong(4)}));
+        return ranges;
+    }
+
+    // Stream up to limit trainable rows of one market with id >= fromId, in id order.
+    // Returns the last id read, or -1 if there were no such rows.
+    public long streamMarketBlock(int marketId, long fromId, int limit, TrainingRowHandler handler) {
+        double[] features = FeatureSchema.newVector();
+        long[] lastId = {-1};
+        jdbcTemplate.query(MARKET_BLOCK_SQL, (RowCallbackHandler) rs -> {
+            readRow(rs, features, handler);
+            lastId[0] = rs.getLong(11);
+        }, marketId, fromId, limit);
+        return lastId[0];
+    }
+
+    private static void readRow(ResultSet rs, double[] features, TrainingRowHandler handler) throws SQLException {
+        int marketId = rs.getInt(1);
+        if (rs.wasNull()) {
+            marketId = UNKNOWN_MARKET;
+        }
+        LocalDateTime createdAt = rs.getObject(2, LocalDateTime.class);
+        LocalDateTime actualDeliveryTime = rs.getObject(3, LocalDateTime.class);
+        features[FeatureSchema.TOTAL_ITEMS] = rs.getInt(4);
+        features[FeatureSchema.SUBTOTAL] = rs.getDouble(5);
+        features[FeatureSchema.DRIVING_DURATION] = rs.getInt(6);
+        features[FeatureSchema.MARKET_ID] = marketId;
+        features[FeatureSchema.STORE_CATEGORY] = FeatureSchema.categoryCode(rs.getString(7));
+        // Supply counts are optional in porter_data; NULL reads as FeatureSchema.MISSING
+        features[FeatureSchema.ONSHIFT_DASHERS] = count(rs, 8);
+        features[FeatureSchema.BUSY_DASHERS] = count(rs, 9);
+        features[FeatureSchema.OUTSTANDING_ORDERS] = count(rs, 10);
+        handler.accept(marketId, features, Duration.between(createdAt, actualDeliveryTime).toMinutes());
+    }
+
+    private static double count(ResultSet rs, int column) throws SQLException {
+        int value = rs.getInt(column);
+        return rs.wasNull() ? FeatureSchema.MISSING : value;
+    }
+}
@@ -0,0 +1,155 @@
+package com.delivery.prediction.service;
+
+import com.delivery.prediction.analytics.DeliveryTimeAggregate;
+import com.delivery.prediction.analytics.MarketAggregates;
+import com.delivery.prediction.model.Prediction;
+import com.delivery.prediction.regression.FeatureSchema;
+import com.delivery.prediction.regression.ModelSnapshot;
+import com.delivery.prediction.repository.TrainingDataRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Materialised per-market and global sums of actual and predicted delivery minutes.
+// Rebuilt in the background with one pass over the feature store whenever a model snapshot is
+// activated (the previous aggregates keep serving meanwhile), then kept current by record() as
+// predictions are saved, so analytics reads cost O(markets).
+@Service
+public class AnalyticsAggregateStore implements ApplicationListener<ModelPublishedEvent> {
+
+    private static final Logger logger = Logger.getLogger(AnalyticsAggregateStore.class.getName());
+
+    @Autowired
+    private FeatureStore featureStore;
+
+    // Only maintained when analytics are served from it
+    @Value("${analytics.engine:incremental}")
+    private String analyticsEngine;
+
+    // Replaced as a whole by rebuild(); individual aggregates are guarded by the state's monitor
+    private volatile AggregateState state = new AggregateState(null);
+
+    // Bumped whenever a prediction is saved or a model snapshot is activated, whatever the engine,
+    // so cached analytics can tell that their inputs changed
+    private final AtomicLong dataVersion = new AtomicLong();
+
+    // Rebuilds run here rather than on the thread that activated the models (an /activate request)
+    private final ExecutorService rebuildExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "analytics-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Models of the latest event; a queued rebuild for any older snapshot is skipped
+    private volatile ModelSnapshot latestModels;
+
+    // Predicted sums depend on the models, so reseed whenever a different snapshot becomes active.
+    // Events arrive in activation order, so the latest one names the active snapshot.
+    @Override
+    public void onApplicationEvent(ModelPublishedEvent event) {
+        dataVersion.incrementAndGet();
+        ModelSnapshot models = event.getModels();
+        latestModels = models;
+        rebuildExecutor.execute(() -> {
+            if (models != latestModels) {
+                return;
+            }
+            try {
+                rebuild(models);
+            } catch (Exception e) {
+                logger.log(Level.SEVERE, "Rebuilding analytics aggregates failed", e);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rebuildExecutor.shutdownNow();
+    }
+
+    public long getDataVersion() {
+        return dataVersion.get();
+    }
+
+    // Recompute every aggregate against the given models. Rows saved while the rebuild is
+    // streaming may be missed until the next rebuild.
+    public void rebuild(ModelSnapshot models) {
+        if (!isEnabled()) {
+            return;
+        }
+        AggregateState rebuilt = new AggregateState(models);
+        double[] predictions = new double[3];
+        long rows = featureStore.forEachRow((marketId, features, deliveryMinutes) ->
+                rebuilt.add(marketId, features, deliveryMinutes, predictions));
+        state = rebuilt;
+        // Analytics computed while the rebuild ran still used the previous models
+        dataVersion.incrementAndGet();
+        logger.info("Analytics aggregates rebuilt from " + rows + " records");
+    }
+
+    // Fold a newly saved prediction into the aggregates
+    public void record(Prediction data) {
+        dataVersion.incrementAndGet();
+        if (data.getCreatedAt() == null || data.getActualDeliveryTime() == null || data.getTotalItems() == null
+                || data.getSubtotal() == null || data.getEstimatedStoreToConsumerDrivingDuration() == null) {
+            return;
+        }
+        AggregateState current = state;
+        if (current.models == null) {
+            return;
+        }
+        int marketId = data.getMarketId() == null ? TrainingDataRepository.UNKNOWN_MARKET : data.getMarketId();
+        double actualMinutes = Duration.between(data.getCreatedAt(), data.getActualDeliveryTime()).toMinutes();
+        current.add(marketId, FeatureSchema.fill(data, FeatureSchema.newVector()), actualMinutes, new double[3]);
+    }
+
+    public boolean isEnabled() {
+        return "incremental".equalsIgnoreCase(analyticsEngine);
+    }
+
+    // Copy of the current overall and per-market aggregates, taken under one lock
+    public MarketAggregates snapshot() {
+        AggregateState current = state;
+        synchronized (current) {
+            Map<Integer, DeliveryTimeAggregate> markets = new HashMap<>();
+            for (Map.Entry<Integer, DeliveryTimeAggregate> entry : current.markets.entrySet()) {
+                markets.put(entry.getKey(), entry.getValue().copy());
+            }
+            return new MarketAggregates(current.overall.copy(), markets);
+        }
+    }
+
+    private static final class AggregateState {
+
+        private final ModelSnapshot models;
+        private final DeliveryTimeAggregate overall = new DeliveryTimeAggregate();
+        private final Map<Integer, DeliveryTimeAggregate> markets = new HashMap<>();
+
+        private AggregateState(ModelSnapshot models) {
+            this.models = models;
+        }
+
+        private void add(int marketId, double[] features, double actualMinutes, double[] predictions) {
+            // Score outside the lock; only the additions are serialised
+            predictions[0] = models.getSimple().predict(features);
+            predictions[1] = models.getMultiple().predict(features);
+            predictions[2] = models.getPolynomial().predict(features);
+            synchronized (this) {
+                overall.add(actualMinutes, predictions[0], predictions[1], predictions[2]);
+                markets.computeIfAbsent(marketId, id -> new DeliveryTimeAggregate())
+                        .add(actualMinutes, predictions[0], predictions[1], predictions[2]);
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.delivery.prediction.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.TimeUnit;
+
+// Shared meters of the analytics engines. Query time is split into the fetch phase (reading rows
+// or aggregates from the database or feature store) and the compute phase (scoring and folding
+// them), tagged by engine, next to the number of rows each request materialised.
+@Service
+public class AnalyticsMetrics {
+
+    public static final String FETCH = "fetch";
+    public static final String COMPUTE = "compute";
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    public void recordPhase(String engine, String phase, long startNanos) {
+        Timer.builder("analytics.query")
+                .description("Analytics query time by engine and phase")
+                .tag("engine", engine)
+                .tag("phase", phase)
+                .register(meterRegistry)
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordRows(String engine, long rows) {
+        DistributionSummary.builder("analytics.rows.materialized")
+                .description("Rows read or scored to answer one analytics request")
+                .tag("engine", engine)
+                .register(meterRegistry)
+                .record(rows);
+    }
+}
@@ -1,16 +1,20 @@
 package com.delivery.prediction.service;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
-import com.delivery.prediction.model.Prediction;
-import com.delivery.prediction.repository.PredictionRepository;
+import com.delivery.prediction.analytics.DeliveryTimeAggregate;
+import com.delivery.prediction.analytics.MarketAggregates;
+import com.delivery.prediction.analytics.ModelEvaluation;
+import com.delivery.prediction.analytics.SampleEstimate;
+import com.delivery.prediction.analytics.StratifiedSample;
+import com.delivery.prediction.regression.ModelType;
+import com.delivery.prediction.repository.TrainingDataRepository;
 
-import java.time.Duration;
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 @Service
@@ -25,14 +29,39 @@ public class AnalyticsService {
     private PredictionService predictionService;
     
     @Autowired
-    private PredictionRepository predictionRepository;
+    private AnalyticsAggregateStore analyticsAggregateStore;
+    
+    @Autowired
+    private SqlAnalyticsEngine sqlAnalyticsEngine;
+    
+    @Autowired
+    private ColumnarAnalyticsEngine columnarAnalyticsEngine;
+    
+    @Autowired
+    private SamplingService samplingService;
+    
+    @Autowired
+    private AnalyticsMetrics analyticsMetrics;
+    
+    // incremental: pre-aggregated sums kept in memory; sql: aggregate queries run by the database;
+    // columnar: scan of the in-memory feature store
+    @Value("${analytics.engine:incremental}")
+    private String analyticsEngine;
 
 public Map<String, Object> calculateAverageDeliveryTime() {
+    return calculateAverageDeliveryTime(null, SamplingService.Method.RESERVOIR);
+}
+
+// With a sample size, averages are estimated from a stratified sample of that many rows per market
+// and reported with 95% confidence intervals; without one, every row is aggregated.
+public Map<String, Object> calculateAverageDeliveryTime(Integer sampleSize, SamplingService.Method samplingMethod) {
     Map<String, Object> response = new HashMap<>();
     
     try {
         // Calculate model-based average times
-        Map<String, Object> modelBasedTimes = calculateModelBasedAverageTimes();
+        Map<String, Object> modelBasedTimes = sampleSize == null
+                ? calculateModelBasedAverageTimes(loadAggregates())
+                : calculateSampledAverageTimes(samplingService.sampleByMarket(sampleSize, samplingMethod, predictionService.getModels()));
         response.put("modelBasedPredictions", modelBasedTimes);
         
         // Add total record count for context
@@ -40,8 +69,7 @@ public Map<String, Object> calculateAverageDeliveryTime() {
         response.put("totalRecords", count);
         
     } catch (Exception e) {
-        logger.severe("Error in calculateAverageDeliveryTime: " + e.getMessage());
-        e.printStackTrace();
+        logger.log(Level.SEVERE, "Error in calculateAverageDeliveryTime: " + e.getMessage(), e);
         response.put("error", "Error calculating average delivery time: " + e.getMessage());
     }
     
@@ -49,11 +77,17 @@ public Map<String, Object> calculateAverageDeliveryTime() {
 }
 
 public Map<String, Object> calculateTrafficImpact() {
+    return calculateTrafficImpact(null, SamplingService.Method.RESERVOIR);
+}
+
+public Map<String, Object> calculateTrafficImpact(Integer sampleSize, SamplingService.Method samplingMethod) {
     Map<String, Object> response = new HashMap<>();
     
     try {
         // Add model-based traffic impact
-        response.put("modelBasedTrafficImpact", calculateModelBasedTrafficImpact());
+        response.put("modelBasedTrafficImpact", sampleSize == null
+                ? calculateModelBasedTrafficImpact(loadAggregates())
+                : calculateSampledTrafficImpact(samplingService.sampleByMarket(sampleSize, samplingMethod, predictionService.getModels())));
         
         // Add note explaining traffic impact
         response.put("note", "Traffic impact is the ratio of actual delivery time to estimated delivery time. Values greater than 1 indicate traffic delays.");
@@ -66,230 +100,239 @@ public Map<String, Object> calculateTrafficImpact() {
         response.put("totalRecords", totalRecords);
         
     } catch (Exception e) {
-        logger.severe("Error in calculateTrafficImpact: " + e.getMessage());
-        e.printStackTrace();
+        logger.log(Level.SEVERE, "Error in calculateTrafficImpact: " + e.getMessage(), e);
         response.put("error", "Error calculating traffic impact: " + e.getMessage());
     }
     
     return response;
 }
     
-    // Calculate average delivery times using each prediction model
-    private Map<String, Object> calculateModelBasedAverageTimes() {
-        Map<String, Object> modelPredictions = new HashMap<>();
+    // MAE, RMSE, MAPE, bias and absolute error quantiles of every model, overall and per market,
+    // from a parallel scan of the feature store
+    public Map<String, Object> calculateModelAccuracy() {
+        Map<String, Object> response = new HashMap<>();
         
         try {
-            // Get sample data to run predictions on
-            List<Prediction> sampleData = predictionRepository.findAll();
-            int limit = Math.min(sampleData.size(), 1000); // Limit to 1000 records for performance
-            
-            // Track predictions for each model
-            double simpleRegTotal = 0;
-            double multipleRegTotal = 0;
-            double polynomialRegTotal = 0;
-            double actualTimeTotal = 0;
-            
-            // Calculate model-based average times
-            for (int i = 0; i < limit; i++) {
-                Prediction data = sampleData.get(i);
-                
-                try {
-                    // Get actual time
-                    double actualTime = Duration.between(data.getCreatedAt(), data.getActualDeliveryTime()).toMinutes();
-                    actualTimeTotal += actualTime;
-                    
-                    // Get predictions from each model
-                    double simpleTime = predictionService.predictSimpleDeliveryTime(data);
-                    double multipleTime = predictionService.predictMultipleDeliveryTime(data);
-                    double polynomialTime = predictionService.predictPolynomialDeliveryTime(data);
-                    
-                    simpleRegTotal += simpleTime;
-                    multipleRegTotal += multipleTime;
-                    polynomialRegTotal += polynomialTime;
-                } catch (Exception e) {
-                    logger.warning("Skipping record in model prediction: " + e.getMessage());
-                }
-            }
-            
-            // Calculate averages
-            double avgActual = actualTimeTotal / limit;
-            double avgSimple = simpleRegTotal / limit;
-            double avgMultiple = multipleRegTotal / limit;
-            double avgPolynomial = polynomialRegTotal / limit;
-            
-            // Add results for each model
-            Map<String, Object> simpleRegression = new HashMap<>();
-            simpleRegression.put("averagePredictedTimeMinutes", avgSimple);
-            simpleRegression.put("differenceFromActualMinutes", avgActual - avgSimple);
-            simpleRegression.put("ratioToActual", avgActual / avgSimple);
-            
-            Map<String, Object> multipleRegression = new HashMap<>();
-            multipleRegression.put("averagePredictedTimeMinutes", avgMultiple);
-            multipleRegression.put("differenceFromActualMinutes", avgActual - avgMultiple);
-            multipleRegression.put("ratioToActual", avgActual / avgMultiple);
-            
-            Map<String, Object> polynomialRegression = new HashMap<>();
-            polynomialRegression.put("averagePredictedTimeMinutes", avgPolynomial);
-            polynomialRegression.put("differenceFromActualMinutes", avgActual - avgPolynomial);
-            polynomialRegression.put("ratioToActual", avgActual / avgPolynomial);
-            
-            // Add to result
-            modelPredictions.put("actualAverageTimeMinutes", avgActual);
-            modelPredictions.put("simpleRegression", simpleRegression);
-            modelPredictions.put("multipleRegression", multipleRegression);
-            modelPredictions.put("polynomialRegression", polynomialRegression);
-            modelPredictions.put("sampleSize", limit);
-            
-            // Determine most accurate model
-            double simpleDiff = Math.abs(avgActual - avgSimple);
-            double multipleDiff = Math.abs(avgActual - avgMultiple);
-            double polynomialDiff = Math.abs(avgActual - avgPolynomial);
-            
-            String mostAccurate = "simpleRegression";
-            if (multipleDiff < simpleDiff && multipleDiff < polynomialDiff) {
-                mostAccurate = "multipleRegression";
-            } else if (polynomialDiff < simpleDiff && polynomialDiff < multipleDiff) {
-                mostAccurate = "polynomialRegression";
+            Map<Integer, ModelEvaluation> markets = columnarAnalyticsEngine.evaluate(predictionService.getModels());
+            ModelEvaluation overall = new ModelEvaluation();
+            Map<String, Object> marketAccuracy = new HashMap<>();
+            for (Map.Entry<Integer, ModelEvaluation> entry : markets.entrySet()) {
+                overall.merge(entry.getValue());
+                marketAccuracy.put(marketKey(entry.getKey()), accuracyResult(entry.getValue()));
             }
             
-            modelPredictions.put("mostAccurateModel", mostAccurate);
+            response.put("overallAccuracy", accuracyResult(overall));
+            response.put("marketAccuracy", marketAccuracy);
+            response.put("modelVersion", predictionService.getModels().getVersion());
+            response.put("totalRecords", overall.getTotals().getCount());
             
         } catch (Exception e) {
-            logger.severe("Error calculating model-based average times: " + e.getMessage());
+            logger.log(Level.SEVERE, "Error in calculateModelAccuracy: " + e.getMessage(), e);
+            response.put("error", "Error calculating model accuracy: " + e.getMessage());
+        }
+        
+        return response;
+    }
+    
+    private Map<String, Object> accuracyResult(ModelEvaluation evaluation) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("simpleRegression", evaluation.getErrors(ModelType.SIMPLE).toMap());
+        result.put("multipleRegression", evaluation.getErrors(ModelType.MULTIPLE).toMap());
+        result.put("polynomialRegression", evaluation.getErrors(ModelType.POLYNOMIAL).toMap());
+        result.put("averageActualMinutes", evaluation.getTotals().averageActual());
+        return result;
+    }
+    
+    // Per-market sums of actual and predicted minutes from the configured engine
+    private MarketAggregates loadAggregates() {
+        if ("sql".equalsIgnoreCase(analyticsEngine)) {
+            return sqlAnalyticsEngine.aggregate(predictionService.getModels());
+        }
+        if ("columnar".equalsIgnoreCase(analyticsEngine)) {
+            return columnarAnalyticsEngine.aggregate(predictionService.getModels());
+        }
+        long start = System.nanoTime();
+        MarketAggregates aggregates = analyticsAggregateStore.snapshot();
+        analyticsMetrics.recordPhase("incremental", AnalyticsMetrics.COMPUTE, start);
+        // Served from one pre-aggregated entry per market
+        analyticsMetrics.recordRows("incremental", aggregates.getByMarket().size());
+        return aggregates;
+    }
+    
+    // Calculate average delivery times using each prediction model
+    private Map<String, Object> calculateModelBasedAverageTimes(MarketAggregates aggregates) {
+        try {
+            // Totals come pre-aggregated, so no rows are read here
+            DeliveryTimeAggregate overall = aggregates.getOverall();
+            return modelComparison(exact(overall.averageActual()),
+                    exact(overall.averagePredicted(ModelType.SIMPLE)),
+                    exact(overall.averagePredicted(ModelType.MULTIPLE)),
+                    exact(overall.averagePredicted(ModelType.POLYNOMIAL)),
+                    overall.getCount(), false);
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Error calculating model-based average times: " + e.getMessage(), e);
+            Map<String, Object> modelPredictions = new HashMap<>();
             modelPredictions.put("error", "Error calculating model-based average times: " + e.getMessage());
+            return modelPredictions;
+        }
+    }
+    
+    // Same as above, estimated from a stratified sample
+    private Map<String, Object> calculateSampledAverageTimes(StratifiedSample sample) {
+        Map<String, Object> modelPredictions = modelComparison(sample.overallActual(),
+                sample.overallPredicted(ModelType.SIMPLE),
+                sample.overallPredicted(ModelType.MULTIPLE),
+                sample.overallPredicted(ModelType.POLYNOMIAL),
+                sample.getSampleSize(), true);
+        modelPredictions.put("sampled", true);
+        modelPredictions.put("approximateIntervals", sample.isClustered());
+        return modelPredictions;
+    }
+    
+    private Map<String, Object> modelComparison(SampleEstimate actual, SampleEstimate simple, SampleEstimate multiple,
+                                                SampleEstimate polynomial, long sampleSize, boolean withIntervals) {
+        Map<String, Object> modelPredictions = new HashMap<>();
+        double avgActual = actual.getMean();
+        double avgSimple = simple.getMean();
+        double avgMultiple = multiple.getMean();
+        double avgPolynomial = polynomial.getMean();
+        
+        // Add results for each model
+        Map<String, Object> simpleRegression = new HashMap<>();
+        simpleRegression.put("averagePredictedTimeMinutes", avgSimple);
+        simpleRegression.put("differenceFromActualMinutes", avgActual - avgSimple);
+        simpleRegression.put("ratioToActual", avgActual / avgSimple);
+        
+        Map<String, Object> multipleRegression = new HashMap<>();
+        multipleRegression.put("averagePredictedTimeMinutes", avgMultiple);
+        multipleRegression.put("differenceFromActualMinutes", avgActual - avgMultiple);
+        multipleRegression.put("ratioToActual", avgActual / avgMultiple);
+        
+        Map<String, Object> polynomialRegression = new HashMap<>();
+        polynomialRegression.put("averagePredictedTimeMinutes", avgPolynomial);
+        polynomialRegression.put("differenceFromActualMinutes", avgActual - avgPolynomial);
+        polynomialRegression.put("ratioToActual", avgActual / avgPolynomial);
+        
+        if (withIntervals) {
+            modelPredictions.put("actualAverageTimeConfidenceInterval", actual.toMap());
+            simpleRegression.put("confidenceInterval", simple.toMap());
+            multipleRegression.put("confidenceInterval", multiple.toMap());
+            polynomialRegression.put("confidenceInterval", polynomial.toMap());
         }
         
+        // Add to result
+        modelPredictions.put("actualAverageTimeMinutes", avgActual);
+        modelPredictions.put("simpleRegression", simpleRegression);
+        modelPredictions.put("multipleRegression", multipleRegression);
+        modelPredictions.put("polynomialRegression", polynomialRegression);
+        modelPredictions.put("sampleSize", sampleSize);
+        
+        // Determine most accurate model
+        double simpleDiff = Math.abs(avgActual - avgSimple);
+        double multipleDiff = Math.abs(avgActual - avgMultiple);
+        double polynomialDiff = Math.abs(avgActual - avgPolynomial);
+        
+        String mostAccurate = "simpleRegression";
+        if (multipleDiff < simpleDiff && multipleDiff < polynomialDiff) {
+            mostAccurate = "multipleRegression";
+        } else if (polynomialDiff < simpleDiff && polynomialDiff < multipleDiff) {
+            mostAccurate = "polynomialRegression";
+        }
+        
+        modelPredictions.put("mostAccurateModel", mostAccurate);
         return modelPredictions;
     }
     
     // Calculate traffic impact using each prediction model
-    private Map<String, Object> calculateModelBasedTrafficImpact() {
+    private Map<String, Object> calculateModelBasedTrafficImpact(MarketAggregates aggregates) {
         Map<String, Object> modelTrafficImpact = new HashMap<>();
         
         try {
-            // Get data grouped by market
-            List<Prediction> allData = predictionRepository.findAll();
-            Map<String, List<Prediction>> marketData = new HashMap<>();
-            
-            for (Prediction data : allData) {
-                //String marketId = data.getMarketId();
-				String marketId = String.valueOf(data.getMarketId());
-                if (marketId != null) {
-                    if (!marketData.containsKey(marketId)) {
-                        marketData.put(marketId, new ArrayList<>());
-                    }
-                    marketData.get(marketId).add(data);
-                }
-            }
-            
-            // Calculate model-based traffic impact by market
+            // Calculate model-based traffic impact by market from the pre-aggregated sums
             Map<String, Object> marketImpacts = new HashMap<>();
             
-            for (Map.Entry<String, List<Prediction>> entry : marketData.entrySet()) {
-                String marketId = entry.getKey();
-                List<Prediction> marketPredictions = entry.getValue();
-                int limit = Math.min(marketPredictions.size(), 500); // Limit per market
-                
-                double actualTotal = 0;
-                double simpleTotal = 0;
-                double multipleTotal = 0;
-                double polynomialTotal = 0;
-                
-                for (int i = 0; i < limit; i++) {
-                    Prediction data = marketPredictions.get(i);
-                    
-                    try {
-                        // Get actual delivery time
-                        double actualTime = Duration.between(data.getCreatedAt(), data.getActualDeliveryTime()).toMinutes();
-                        actualTotal += actualTime;
-                        
-                        // Get model predictions
-                        double simpleTime = predictionService.predictSimpleDeliveryTime(data);
-                        double multipleTime = predictionService.predictMultipleDeliveryTime(data);
-                        double polynomialTime = predictionService.predictPolynomialDeliveryTime(data);
-                        
-                        simpleTotal += simpleTime;
-                        multipleTotal += multipleTime;
-                        polynomialTotal += polynomialTime;
-                    } catch (Exception e) {
-                        logger.warning("Skipping record in market traffic impact: " + e.getMessage());
-                    }
-                }
-                
-                // Calculate averages
-                double avgActual = actualTotal / limit;
-                double avgSimple = simpleTotal / limit;
-                double avgMultiple = multipleTotal / limit;
-                double avgPolynomial = polynomialTotal / limit;
-                
-                // Calculate traffic impact ratios
-                Map<String, Object> marketResult = new HashMap<>();
-                marketResult.put("averageActualMinutes", avgActual);
-                marketResult.put("simpleRegressionPredictionMinutes", avgSimple);
-                marketResult.put("multipleRegressionPredictionMinutes", avgMultiple);
-                marketResult.put("polynomialRegressionPredictionMinutes", avgPolynomial);
-                marketResult.put("simpleRegressionImpactRatio", avgActual / avgSimple);
-                marketResult.put("multipleRegressionImpactRatio", avgActual / avgMultiple);
-                marketResult.put("polynomialRegressionImpactRatio", avgActual / avgPolynomial);
-                marketResult.put("sampleSize", limit);
-                
-                marketImpacts.put(marketId, marketResult);
-            }
-            
-            // Calculate overall model-based traffic impact
-            double overallActualTotal = 0;
-            double overallSimpleTotal = 0;
-            double overallMultipleTotal = 0;
-            double overallPolynomialTotal = 0;
-            int overallLimit = Math.min(allData.size(), 1000);
-            
-            for (int i = 0; i < overallLimit; i++) {
-                Prediction data = allData.get(i);
-                
-                try {
-                    // Get actual delivery time
-                    double actualTime = Duration.between(data.getCreatedAt(), data.getActualDeliveryTime()).toMinutes();
-                    overallActualTotal += actualTime;
-                    
-                    // Get model predictions
-                    double simpleTime = predictionService.predictSimpleDeliveryTime(data);
-                    double multipleTime = predictionService.predictMultipleDeliveryTime(data);
-                    double polynomialTime = predictionService.predictPolynomialDeliveryTime(data);
-                    
-                    overallSimpleTotal += simpleTime;
-                    overallMultipleTotal += multipleTime;
-                    overallPolynomialTotal += polynomialTime;
-                } catch (Exception e) {
-                    logger.warning("Skipping record in overall traffic impact: " + e.getMessage());
-                }
+            for (Map.Entry<Integer, DeliveryTimeAggregate> entry : aggregates.getByMarket().entrySet()) {
+                marketImpacts.put(marketKey(entry.getKey()), trafficImpactResult(entry.getValue()));
             }
             
-            // Calculate overall averages
-            double overallAvgActual = overallActualTotal / overallLimit;
-            double overallAvgSimple = overallSimpleTotal / overallLimit;
-            double overallAvgMultiple = overallMultipleTotal / overallLimit;
-            double overallAvgPolynomial = overallPolynomialTotal / overallLimit;
-            
-            // Calculate overall traffic impact ratios
-            Map<String, Object> overallResult = new HashMap<>();
-            overallResult.put("averageActualMinutes", overallAvgActual);
-            overallResult.put("simpleRegressionPredictionMinutes", overallAvgSimple);
-            overallResult.put("multipleRegressionPredictionMinutes", overallAvgMultiple);
-            overallResult.put("polynomialRegressionPredictionMinutes", overallAvgPolynomial);
-            overallResult.put("simpleRegressionImpactRatio", overallAvgActual / overallAvgSimple);
-            overallResult.put("multipleRegressionImpactRatio", overallAvgActual / overallAvgMultiple);
-            overallResult.put("polynomialRegressionImpactRatio", overallAvgActual / overallAvgPolynomial);
-            overallResult.put("sampleSize", overallLimit);
-            
             // Add to result
-            modelTrafficImpact.put("overallModelBasedTrafficImpact", overallResult);
+            modelTrafficImpact.put("overallModelBasedTrafficImpact", trafficImpactResult(aggregates.getOverall()));
             modelTrafficImpact.put("marketModelBasedTrafficImpact", marketImpacts);
             
         } catch (Exception e) {
-            logger.severe("Error calculating model-based traffic impact: " + e.getMessage());
+            logger.log(Level.SEVERE, "Error calculating model-based traffic impact: " + e.getMessage(), e);
             modelTrafficImpact.put("error", "Error calculating model-based traffic impact: " + e.getMessage());
         }
         
         return modelTrafficImpact;
     }
+    
+    // Same as above, estimated from a stratified sample
+    private Map<String, Object> calculateSampledTrafficImpact(StratifiedSample sample) {
+        Map<String, Object> modelTrafficImpact = new HashMap<>();
+        Map<String, Object> marketImpacts = new HashMap<>();
+        
+        for (Map.Entry<Integer, DeliveryTimeAggregate> entry : sample.getSamples().entrySet()) {
+            int marketId = entry.getKey();
+            marketImpacts.put(marketKey(marketId), trafficImpactResult(sample.actual(marketId),
+                    sample.predicted(marketId, ModelType.SIMPLE),
+                    sample.predicted(marketId, ModelType.MULTIPLE),
+                    sample.predicted(marketId, ModelType.POLYNOMIAL),
+                    entry.getValue().getCount(), true));
+        }
+        
+        modelTrafficImpact.put("overallModelBasedTrafficImpact", trafficImpactResult(sample.overallActual(),
+                sample.overallPredicted(ModelType.SIMPLE),
+                sample.overallPredicted(ModelType.MULTIPLE),
+                sample.overallPredicted(ModelType.POLYNOMIAL),
+                sample.getSampleSize(), true));
+        modelTrafficImpact.put("marketModelBasedTrafficImpact", marketImpacts);
+        modelTrafficImpact.put("sampled", true);
+        modelTrafficImpact.put("approximateIntervals", sample.isClustered());
+        return modelTrafficImpact;
+    }
+    
+    private Map<String, Object> trafficImpactResult(DeliveryTimeAggregate aggregate) {
+        return trafficImpactResult(exact(aggregate.averageActual()),
+                exact(aggregate.averagePredicted(ModelType.SIMPLE)),
+                exact(aggregate.averagePredicted(ModelType.MULTIPLE)),
+                exact(aggregate.averagePredicted(ModelType.POLYNOMIAL)),
+                aggregate.getCount(), false);
+    }
+    
+    // Average actual vs. predicted minutes and the resulting traffic impact ratios
+    private Map<String, Object> trafficImpactResult(SampleEstimate actual, SampleEstimate simple, SampleEstimate multiple,
+                                                    SampleEstimate polynomial, long sampleSize, boolean withIntervals) {
+        double avgActual = actual.getMean();
+        double avgSimple = simple.getMean();
+        double avgMultiple = multiple.getMean();
+        double avgPolynomial = polynomial.getMean();
+        
+        Map<String, Object> result = new HashMap<>();
+        result.put("averageActualMinutes", avgActual);
+        result.put("simpleRegressionPredictionMinutes", avgSimple);
+        result.put("multipleRegressionPredictionMinutes", avgMultiple);
+        result.put("polynomialRegressionPredictionMinutes", avgPolynomial);
+        result.put("simpleRegressionImpactRatio", avgActual / avgSimple);
+        result.put("multipleRegressionImpactRatio", avgActual / avgMultiple);
+        result.put("polynomialRegressionImpactRatio", avgActual / avgPolynomial);
+        result.put("sampleSize", sampleSize);
+        
+        if (withIntervals) {
+            result.put("averageActualMinutesConfidenceInterval", actual.toMap());
+            result.put("simpleRegressionPredictionMinutesConfidenceInterval", simple.toMap());
+            result.put("multipleRegressionPredictionMinutesConfidenceInterval", multiple.toMap());
+            result.put("polynomialRegressionPredictionMinutesConfidenceInterval", polynomial.toMap());
+        }
+        return result;
+    }
+    
+    // Aggregates over every row are exact
+    private static SampleEstimate exact(double mean) {
+        return new SampleEstimate(mean, 0.0);
+    }
+    
+    private static String marketKey(int marketId) {
+        return marketId == TrainingDataRepository.UNKNOWN_MARKET ? "null" : String.valueOf(marketId);
+    }
 }
\ No newline at end of file
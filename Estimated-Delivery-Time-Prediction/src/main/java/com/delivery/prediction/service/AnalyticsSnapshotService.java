@@ -0,0 +1,169 @@
+package com.delivery.prediction.service;
+
+import com.delivery.prediction.analytics.AnalyticsSnapshot;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Logger;
+
+// Serves the full (unsampled) analytics views from precomputed, versioned snapshots.
+//
+// A view is computed on its first request and then refreshed in the background every
+// refresh-interval-ms if predictions were saved or models changed since (or it is older than
+// max-age-ms, to pick up rows written outside the app). Readers always get the latest snapshot
+// without waiting; concurrent computations of the same view coalesce onto one.
+@Service
+public class AnalyticsSnapshotService {
+
+    private static final Logger logger = Logger.getLogger(AnalyticsSnapshotService.class.getName());
+
+    public enum View {
+        AVERAGE_TIME, TRAFFIC_IMPACT, MODEL_ACCURACY
+    }
+
+    @Autowired
+    private AnalyticsService analyticsService;
+
+    @Autowired
+    private AnalyticsAggregateStore analyticsAggregateStore;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${analytics.snapshot.enabled:true}")
+    private boolean enabled;
+
+    @Value("${analytics.snapshot.max-age-ms:60000}")
+    private long maxAgeMillis;
+
+    private final ConcurrentMap<View, AnalyticsSnapshot> snapshots = new ConcurrentHashMap<>();
+    private final ConcurrentMap<View, CompletableFuture<AnalyticsSnapshot>> inFlight = new ConcurrentHashMap<>();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Current snapshot of the view, computing it if there is none yet. A failed computation
+    // yields an error snapshot, which is not cached, so the next request retries.
+    public AnalyticsSnapshot get(View view) {
+        AnalyticsSnapshot snapshot = snapshots.get(view);
+        return snapshot != null ? snapshot : compute(view);
+    }
+
+    // Background refresh of the views that have been requested and whose inputs have changed
+    @Scheduled(fixedDelayString = "${analytics.snapshot.refresh-interval-ms:5000}")
+    public void refreshStale() {
+        if (!enabled) {
+            return;
+        }
+        long dataVersion = analyticsAggregateStore.getDataVersion();
+        long now = System.currentTimeMillis();
+        for (Map.Entry<View, AnalyticsSnapshot> entry : snapshots.entrySet()) {
+            AnalyticsSnapshot snapshot = entry.getValue();
+            if (snapshot.getDataVersion() != dataVersion || now - snapshot.getComputedAt() > maxAgeMillis) {
+                try {
+                    compute(entry.getKey());
+                } catch (RuntimeException e) {
+                    logger.warning("Refreshing analytics view " + entry.getKey() + " failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    // Compute the view, or join the computation already running for it
+    private AnalyticsSnapshot compute(View view) {
+        CompletableFuture<AnalyticsSnapshot> future = new CompletableFuture<>();
+        CompletableFuture<AnalyticsSnapshot> running = inFlight.putIfAbsent(view, future);
+        if (running != null) {
+            try {
+                return running.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+        }
+        try {
+            AnalyticsSnapshot snapshot = computeNow(view);
+            future.complete(snapshot);
+            return snapshot;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(view, future);
+        }
+    }
+
+    private AnalyticsSnapshot computeNow(View view) {
+        // Read the data version first: changes landing during the computation leave the
+        // snapshot marked stale, so the next refresh picks them up
+        long dataVersion = analyticsAggregateStore.getDataVersion();
+        Map<String, Object> result;
+        switch (view) {
+            case AVERAGE_TIME:
+                result = analyticsService.calculateAverageDeliveryTime();
+                break;
+            case TRAFFIC_IMPACT:
+                result = analyticsService.calculateTrafficImpact();
+                break;
+            case MODEL_ACCURACY:
+                result = analyticsService.calculateModelAccuracy();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown analytics view: " + view);
+        }
+        Counter.builder("analytics.snapshot.computations")
+                .description("Analytics snapshot computations by view")
+                .tag("view", view.name().toLowerCase())
+                .register(meterRegistry)
+                .increment();
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(result);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialise analytics view " + view, e);
+        }
+        if (result.containsKey("error")) {
+            return AnalyticsSnapshot.error(body);
+        }
+        long now = System.currentTimeMillis();
+        AnalyticsSnapshot previous = snapshots.get(view);
+        AnalyticsSnapshot snapshot;
+        if (previous != null && Arrays.equals(previous.getBody(), body)) {
+            snapshot = previous.confirmed(dataVersion, now);
+        } else {
+            long version = previous == null ? 1 : previous.getVersion() + 1;
+            String etag = "\"" + version + "-" + digest(body) + "\"";
+            snapshot = new AnalyticsSnapshot(version, etag, body, now, dataVersion, now);
+        }
+        snapshots.put(view, snapshot);
+        return snapshot;
+    }
+
+    // First 64 bits of the SHA-256 of the body, in hex
+    private static String digest(byte[] body) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(body);
+            return HexFormat.of().formatHex(hash, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.delivery.prediction.service;
+
+import com.delivery.prediction.cache.PredictionCache;
+import com.delivery.prediction.cache.PredictionCacheKey;
+import com.delivery.prediction.regression.FeatureSchema;
+import com.delivery.prediction.regression.ModelType;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+
+// Bounded in-process prediction cache (Caffeine, W-TinyLFU eviction). Features are rounded to a
+// per-feature grid before keying so near-identical orders share an entry; the defaults only
+// round subtotal to whole units, which is lossless for the integer-cent subtotals in porter_data.
+// Entries are keyed on the model version and dropped whenever another version becomes active.
+// Hit and miss counts are exported as cache.gets{cache=predictions}.
+@Service
+public class CaffeinePredictionCache implements PredictionCache, ApplicationListener<ModelPublishedEvent> {
+
+    @Value("${prediction.cache.enabled:false}")
+    private boolean enabled;
+
+    @Value("${prediction.cache.maximum-size:100000}")
+    private long maximumSize;
+
+    @Value("${prediction.cache.subtotal-step:1.0}")
+    private double subtotalStep;
+
+    @Value("${prediction.cache.driving-duration-step:1.0}")
+    private double drivingDurationStep;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Grid step per feature, indexed as in FeatureSchema; 0 keeps the feature as is
+    private final double[] steps = new double[FeatureSchema.SIZE];
+
+    private Cache<PredictionCacheKey, Double> cache;
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        steps[FeatureSchema.TOTAL_ITEMS] = 1.0;
+        steps[FeatureSchema.SUBTOTAL] = subtotalStep;
+        steps[FeatureSchema.DRIVING_DURATION] = drivingDurationStep;
+        cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "predictions");
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public PredictionCacheKey key(ModelType type, long modelVersion, double[] features) {
+        double[] quantized = new double[features.length];
+        for (int i = 0; i < features.length; i++) {
+            double step = i < steps.length ? steps[i] : 0.0;
+            // + 0.0 folds -0.0 into 0.0, which Arrays.equals would tell apart
+            quantized[i] = (step > 0 ? Math.rint(features[i] / step) * step : features[i]) + 0.0;
+        }
+        return new PredictionCacheKey(type, modelVersion, quantized);
+    }
+
+    @Override
+    public Double get(PredictionCacheKey key) {
+        return cache.getIfPresent(key);
+    }
+
+    @Override
+    public void put(PredictionCacheKey key, double prediction) {
+        cache.put(key, prediction);
+    }
+
+    @Override
+    public void invalidateAll() {
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+    }
+
+    // Keys carry the version, so old entries could never be hit again; drop them to free the space
+    @Override
+    public void onApplicationEvent(ModelPublishedEvent event) {
+        invalidateAll();
+    }
+}
@@ -0,0 +1,162 @@
+package com.delivery.prediction.service;
+
+import com.delivery.prediction.analytics.DeliveryTimeAggregate;
+import com.delivery.prediction.analytics.MarketAggregates;
+import com.delivery.prediction.analytics.ModelEvaluation;
+import com.delivery.prediction.analytics.PartialAggregate;
+import com.delivery.prediction.features.FeatureTable;
+import com.delivery.prediction.regression.ModelSnapshot;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Supplier;
+
+// Analytics engine that scans the columnar feature store.
+// The table is split into row-range partitions scanned in parallel on a fork-join pool. Each
+// partition scores its rows in fixed-size chunks with every model's column-at-a-time predictBatch
+// (one fused pass for all three models) and folds them into its own per-market partial
+// aggregates, which are merged pairwise as the tasks join. Nothing is materialised per row.
+// With the feature store disabled, rows are streamed from the database and scored one by one.
+@Service
+public class ColumnarAnalyticsEngine {
+
+    private static final int CHUNK_SIZE = 4096;
+
+    // Rows per partition; below this a scan is not worth splitting
+    private static final int PARTITION_ROWS = 16 * CHUNK_SIZE;
+
+    @Autowired
+    private FeatureStore featureStore;
+
+    @Autowired
+    private AnalyticsMetrics analyticsMetrics;
+
+    // Threads scanning partitions; 0 uses every core
+    @Value("${analytics.parallelism:0}")
+    private int parallelism;
+
+    private ForkJoinPool scanPool;
+
+    @PostConstruct
+    public void start() {
+        scanPool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scanPool.shutdownNow();
+    }
+
+    public MarketAggregates aggregate(ModelSnapshot models) {
+        return MarketAggregates.fromMarkets(scan(models, DeliveryTimeAggregate::new));
+    }
+
+    // Error metrics of every model, per market
+    public Map<Integer, ModelEvaluation> evaluate(ModelSnapshot models) {
+        return scan(models, ModelEvaluation::new);
+    }
+
+    private <T extends PartialAggregate<T>> Map<Integer, T> scan(ModelSnapshot models, Supplier<T> factory) {
+        if (!featureStore.isEnabled()) {
+            return stream(models, factory);
+        }
+        long start = System.nanoTime();
+        FeatureTable table = featureStore.refresh();
+        analyticsMetrics.recordPhase("columnar", AnalyticsMetrics.FETCH, start);
+
+        start = System.nanoTime();
+        Map<Integer, T> markets = scanPool.invoke(new ScanTask<>(table, models, factory, 0, table.getRows()));
+        analyticsMetrics.recordPhase("columnar", AnalyticsMetrics.COMPUTE, start);
+        analyticsMetrics.recordRows("columnar", table.getRows());
+        return markets;
+    }
+
+    // Without the feature store (features.store.enabled=false) there is no table to partition:
+    // score rows one at a time straight from the database cursor, in constant memory
+    private <T extends PartialAggregate<T>> Map<Integer, T> stream(ModelSnapshot models, Supplier<T> factory) {
+        long start = System.nanoTime();
+        Map<Integer, T> markets = new HashMap<>();
+        long rows = featureStore.forEachRow((marketId, features, deliveryMinutes) ->
+                markets.computeIfAbsent(marketId, id -> factory.get()).add(deliveryMinutes,
+                        models.getSimple().predict(features), models.getMultiple().predict(features),
+                        models.getPolynomial().predict(features)));
+        analyticsMetrics.recordPhase("columnar", AnalyticsMetrics.COMPUTE, start);
+        analyticsMetrics.recordRows("columnar", rows);
+        return markets;
+    }
+
+    // Per-market partial aggregates of the rows [from, to)
+    private static final class ScanTask<T extends PartialAggregate<T>> extends RecursiveTask<Map<Integer, T>> {
+
+        private final FeatureTable table;
+        private final ModelSnapshot models;
+        private final Supplier<T> factory;
+        private final int from;
+        private final int to;
+
+        private ScanTask(FeatureTable table, ModelSnapshot models, Supplier<T> factory, int from, int to) {
+            this.table = table;
+            this.models = models;
+            this.factory = factory;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Map<Integer, T> compute() {
+            if (to - from > PARTITION_ROWS) {
+                int middle = (from + to) >>> 1;
+                ScanTask<T> left = new ScanTask<>(table, models, factory, from, middle);
+                left.fork();
+                Map<Integer, T> right = new ScanTask<>(table, models, factory, middle, to).compute();
+                Map<Integer, T> merged = left.join();
+                for (Map.Entry<Integer, T> entry : right.entrySet()) {
+                    merged.merge(entry.getKey(), entry.getValue(), (a, b) -> {
+                        a.merge(b);
+                        return a;
+                    });
+                }
+                return merged;
+            }
+            return scanPartition();
+        }
+
+        private Map<Integer, T> scanPartition() {
+            double[][] columns = table.getColumns();
+            int[] marketIds = table.getMarketIds();
+            double[] deliveryMinutes = table.getDeliveryMinutes();
+
+            double[] simple = new double[CHUNK_SIZE];
+            double[] multiple = new double[CHUNK_SIZE];
+            double[] polynomial = new double[CHUNK_SIZE];
+            Map<Integer, T> markets = new HashMap<>();
+            T market = null;
+            int currentMarket = Integer.MIN_VALUE;
+
+            for (int offset = from; offset < to; offset += CHUNK_SIZE) {
+                int length = Math.min(CHUNK_SIZE, to - offset);
+                models.getSimple().predictBatch(columns, offset, length, simple);
+                models.getMultiple().predictBatch(columns, offset, length, multiple);
+                models.getPolynomial().predictBatch(columns, offset, length, polynomial);
+
+                for (int i = 0; i < length; i++) {
+                    int row = offset + i;
+                    // Consecutive rows often share a market; skip the map lookup when they do
+                    if (marketIds[row] != currentMarket) {
+                        currentMarket = marketIds[row];
+                        market = markets.computeIfAbsent(currentMarket, id -> factory.get());
+                    }
+                    market.add(deliveryMinutes[row], simple[i], multiple[i], polynomial[i]);
+                }
+            }
+            return markets;
+        }
+    }
+}
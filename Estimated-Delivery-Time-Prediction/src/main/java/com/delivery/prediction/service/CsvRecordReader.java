@@ -0,0 +1,89 @@
+package com.delivery.prediction.service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+// Streaming RFC 4180 reader: quoted fields may contain commas, doubled quotes and line breaks.
+// Accepts LF and CRLF line endings and skips blank lines. Not thread-safe.
+final class CsvRecordReader {
+
+    private final Reader reader;
+    private final char[] buffer = new char[64 * 1024];
+    private int position;
+    private int limit;
+
+    CsvRecordReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    // Fields of the next record, or null at the end of the input
+    List<String> next() throws IOException {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        boolean inQuotes = false;
+        int c;
+        while ((c = read()) >= 0) {
+            char ch = (char) c;
+            if (inQuotes) {
+                if (ch != '"') {
+                    field.append(ch);
+                } else if (peek() == '"') {
+                    read();
+                    field.append('"');
+                } else {
+                    inQuotes = false;
+                }
+            } else if (ch == '"' && field.length() == 0 && !quoted) {
+                inQuotes = true;
+                quoted = true;
+            } else if (ch == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+                quoted = false;
+            } else if (ch == '\n' || ch == '\r') {
+                if (ch == '\r' && peek() == '\n') {
+                    read();
+                }
+                if (fields.isEmpty() && field.length() == 0 && !quoted) {
+                    continue;
+                }
+                fields.add(field.toString());
+                return fields;
+            } else {
+                field.append(ch);
+            }
+        }
+        if (fields.isEmpty() && field.length() == 0 && !quoted) {
+            return null;
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private int read() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position++];
+    }
+
+    private int peek() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position];
+    }
+
+    private boolean fill() throws IOException {
+        int read = reader.read(buffer, 0, buffer.length);
+        if (read <= 0) {
+            return false;
+        }
+        position = 0;
+        limit = read;
+        return true;
+    }
+}
@@ -0,0 +1,69 @@
+package com.delivery.prediction.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+// Caps the number of threads inside blocking JDBC writes. With virtual threads there is no
+// worker pool to bound concurrency any more, so thousands of requests could otherwise queue on
+// the HikariCP pool; here they park cheaply on a fair semaphore instead, and give up with
+// DatabaseBusyException (503) once the acquire timeout passes.
+@Service
+public class DatabaseConcurrencyLimiter {
+
+    // Defaults to the HikariCP pool size, so a permit means a connection is available
+    @Value("${persistence.db.max-concurrency:${spring.datasource.hikari.maximum-pool-size:10}}")
+    private int maxConcurrency;
+
+    @Value("${persistence.db.acquire-timeout-ms:5000}")
+    private long acquireTimeoutMs;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Semaphore permits;
+    private Counter rejectedCounter;
+
+    @PostConstruct
+    public void start() {
+        permits = new Semaphore(maxConcurrency, true);
+        Gauge.builder("db.limiter.waiting", permits, Semaphore::getQueueLength)
+                .description("Threads waiting for a database permit")
+                .register(meterRegistry);
+        rejectedCounter = meterRegistry.counter("db.limiter.rejected");
+    }
+
+    public void run(Runnable work) {
+        call(() -> {
+            work.run();
+            return null;
+        });
+    }
+
+    public <T> T call(Supplier<T> work) {
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DatabaseBusyException("Interrupted while waiting for a database permit");
+        }
+        if (!acquired) {
+            rejectedCounter.increment();
+            throw new DatabaseBusyException("No database permit within " + acquireTimeoutMs + " ms");
+        }
+        try {
+            return work.get();
+        } finally {
+            permits.release();
+        }
+    }
+}
@@ -0,0 +1,452 @@
+package com.delivery.prediction.service;
+
+import com.delivery.prediction.dto.DeliveryFeedback;
+import com.delivery.prediction.model.Prediction;
+import com.delivery.prediction.repository.PredictionBatchWriter;
+import com.delivery.prediction.repository.PredictionExportRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+
+// Ingests completed deliveries, the only source of actual_delivery_time and so of the rows models
+// are trained and evaluated on.
+//
+// Records are parsed as a stream and loaded in chunks of feedback.chunk-size: one lookup of the
+// chunk's order ids, then a JDBC batch UPDATE of the orders that were predicted before and a batch
+// INSERT of the rest (multi-row INSERTs with rewriteBatchedStatements), so memory is bounded by a
+// chunk whatever the input size. Invalid records are skipped and reported. Feedback for an order
+// that already has an outcome counts as a duplicate, so re-sending a file does no harm. Records
+// without an orderId (the Porter dataset has none) are matched on the delivery itself instead:
+// market, order and delivery times, store category, basket and driving duration.
+@Service
+public class DeliveryFeedbackService {
+
+    private static final Logger logger = Logger.getLogger(DeliveryFeedbackService.class.getName());
+
+    private static final int MAX_ORDER_ID_LENGTH = 64;
+
+    @Autowired
+    private PredictionBatchWriter predictionBatchWriter;
+
+    @Autowired
+    private PredictionExportRepository predictionExportRepository;
+
+    @Autowired
+    private DatabaseConcurrencyLimiter databaseLimiter;
+
+    @Autowired
+    private AnalyticsAggregateStore analyticsAggregateStore;
+
+    @Autowired
+    private DeliveryTimeSeriesService deliveryTimeSeriesService;
+
+    @Autowired
+    private FeatureStore featureStore;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${feedback.chunk-size:2000}")
+    private int chunkSize;
+
+    // Longer deliveries are rejected as data errors
+    @Value("${feedback.max-delivery-minutes:1440}")
+    private long maxDeliveryMinutes;
+
+    @Value("${feedback.max-reported-errors:100}")
+    private int maxReportedErrors;
+
+    // JSON array or newline-delimited JSON of DeliveryFeedback records. Each record is read as a
+    // tree first, so a value that does not map (a string for a number, a bad timestamp) rejects
+    // only that record; only JSON that cannot be parsed stops the ingestion.
+    public Summary ingestJson(InputStream body) throws IOException {
+        Summary summary = new Summary(maxReportedErrors);
+        Chunk chunk = new Chunk(chunkSize);
+        // hasNextValue/nextValue throw parse errors as they are, where hasNext/next wrap them
+        // in unchecked exceptions
+        try (MappingIterator<JsonNode> records = objectMapper.readerFor(JsonNode.class).readValues(body)) {
+            while (records.hasNextValue()) {
+                JsonNode node = records.nextValue();
+                long index = summary.received++;
+                DeliveryFeedback record;
+                try {
+                    record = objectMapper.treeToValue(node, DeliveryFeedback.class);
+                } catch (JsonProcessingException e) {
+                    summary.reject(index, "unreadable value: " + e.getOriginalMessage());
+                    continue;
+                } catch (IllegalArgumentException e) {
+                    summary.reject(index, "unreadable value: " + e.getMessage());
+                    continue;
+                }
+                if (record == null) {
+                    summary.reject(index, "record must be a JSON object");
+                    continue;
+                }
+                chunk.add(record, index);
+                if (chunk.isFull()) {
+                    load(chunk, summary);
+                }
+            }
+        } catch (JsonProcessingException e) {
+            summary.error = "Malformed record " + summary.received + ": " + e.getMessage();
+        }
+        load(chunk, summary);
+        return summary.finish();
+    }
+
+    // CSV with a header row naming the columns, in snake_case (as in the Porter dataset and the
+    // CSV export) or camelCase; unknown columns such as store_id are ignored
+    public Summary ingestCsv(InputStream body) throws IOException {
+        Summary summary = new Summary(maxReportedErrors);
+        CsvRecordReader reader = new CsvRecordReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        List<String> header = reader.next();
+        if (header == null) {
+            return summary.finish();
+        }
+        String[] columns = new String[header.size()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = header.get(i).replace("\uFEFF", "").replace("_", "").trim().toLowerCase();
+        }
+        if (!List.of(columns).contains("actualdeliverytime")) {
+            summary.error = "CSV header has no actual_delivery_time column";
+            return summary.finish();
+        }
+
+        Chunk chunk = new Chunk(chunkSize);
+        List<String> fields;
+        while ((fields = reader.next()) != null) {
+            long index = summary.received++;
+            try {
+                chunk.add(fromCsv(columns, fields), index);
+            } catch (NumberFormatException | DateTimeParseException e) {
+                summary.reject(index, "unreadable value: " + e.getMessage());
+                continue;
+            }
+            if (chunk.isFull()) {
+                load(chunk, summary);
+            }
+        }
+        load(chunk, summary);
+        return summary.finish();
+    }
+
+    private void load(Chunk chunk, Summary summary) {
+        if (chunk.size == 0) {
+            return;
+        }
+        Set<String> orderIds = new HashSet<>();
+        for (int i = 0; i < chunk.size; i++) {
+            String orderId = chunk.records[i].getOrderId();
+            if (orderId != null && orderId.length() <= MAX_ORDER_ID_LENGTH) {
+                orderIds.add(orderId);
+            }
+        }
+        Map<String, Prediction> existing = orderIds.isEmpty() ? Map.of()
+                : databaseLimiter.call(() -> predictionExportRepository.findLatestByOrderIds(orderIds));
+
+        // Deliveries already stored for the records that have no order id
+        Set<LocalDateTime> createdAts = new HashSet<>();
+        for (int i = 0; i < chunk.size; i++) {
+            DeliveryFeedback record = chunk.records[i];
+            if (record.getOrderId() == null && record.getCreatedAt() != null) {
+                createdAts.add(record.getCreatedAt());
+            }
+        }
+        Set<List<Object>> delivered = new HashSet<>();
+        if (!createdAts.isEmpty()) {
+            for (Prediction row : databaseLimiter.call(() -> predictionExportRepository.findDeliveredByCreatedAt(createdAts))) {
+                delivered.add(deliveryKey(row));
+            }
+        }
+
+        List<Prediction> updates = new ArrayList<>();
+        List<Prediction> inserts = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        Set<List<Object>> seenDeliveries = new HashSet<>();
+        for (int i = 0; i < chunk.size; i++) {
+            DeliveryFeedback record = chunk.records[i];
+            Prediction row = record.getOrderId() == null ? null : existing.get(record.getOrderId());
+            String error = validate(record, row);
+            if (error != null) {
+                summary.reject(chunk.indexes[i], error);
+            } else if (isDuplicate(record, row, seen, seenDeliveries, delivered)) {
+                summary.duplicates++;
+            } else if (row != null) {
+                row.setActualDeliveryTime(record.getActualDeliveryTime());
+                updates.add(row);
+            } else {
+                inserts.add(toPrediction(record));
+            }
+        }
+        chunk.size = 0;
+
+        databaseLimiter.run(() -> {
+            predictionBatchWriter.updateActualDeliveryTimes(updates);
+            predictionBatchWriter.insertAll(inserts);
+        });
+        if (!updates.isEmpty()) {
+            featureStore.markStale();
+        }
+        summary.updated += updates.size();
+        summary.inserted += inserts.size();
+        for (Prediction row : updates) {
+            analyticsAggregateStore.record(row);
+            deliveryTimeSeriesService.record(row);
+        }
+        for (Prediction row : inserts) {
+            analyticsAggregateStore.record(row);
+            deliveryTimeSeriesService.record(row);
+        }
+    }
+
+    // Why the record cannot be loaded, or null. row is the order's latest prediction, if any.
+    private String validate(DeliveryFeedback record, Prediction row) {
+        if (record.getOrderId() != null && (record.getOrderId().isBlank() || record.getOrderId().length() > MAX_ORDER_ID_LENGTH)) {
+            return "orderId must have 1 to " + MAX_ORDER_ID_LENGTH + " characters";
+        }
+        if (record.getActualDeliveryTime() == null) {
+            return "actualDeliveryTime is required";
+        }
+        LocalDateTime createdAt = row != null ? row.getCreatedAt() : record.getCreatedAt();
+        if (createdAt == null) {
+            return "createdAt is required for an order that was not predicted";
+        }
+        Duration delivery = Duration.between(createdAt, record.getActualDeliveryTime());
+        if (delivery.isNegative() || delivery.toMinutes() > maxDeliveryMinutes) {
+            return "delivery must take between 0 and " + maxDeliveryMinutes + " minutes";
+        }
+        if (row == null && (negative(record.getTotalItems()) || negative(record.getSubtotal())
+                || negative(record.getEstimatedStoreToConsumerDrivingDuration()) || negative(record.getTotalOnshiftDashers())
+                || negative(record.getTotalBusyDashers()) || negative(record.getTotalOutstandingOrders()))) {
+            return "counts, amounts and durations must not be negative";
+        }
+        return null;
+    }
+
+    private static boolean negative(Number value) {
+        return value != null && value.doubleValue() < 0;
+    }
+
+    // Whether the record repeats an earlier one of the chunk or a delivery that is already stored
+    private static boolean isDuplicate(DeliveryFeedback record, Prediction row, Set<String> seen,
+                                       Set<List<Object>> seenDeliveries, Set<List<Object>> delivered) {
+        if (record.getOrderId() != null) {
+            return !seen.add(record.getOrderId()) || (row != null && row.getActualDeliveryTime() != null);
+        }
+        List<Object> key = deliveryKey(toPrediction(record));
+        return !seenDeliveries.add(key) || delivered.contains(key);
+    }
+
+    // Identifies a delivery without an order id; the columns are compared as stored
+    private static List<Object> deliveryKey(Prediction row) {
+        return Arrays.asList(row.getMarketId(), row.getCreatedAt(), row.getActualDeliveryTime(),
+                row.getStorePrimaryCategory(), row.getTotalItems(), row.getSubtotal(),
+                row.getEstimatedStoreToConsumerDrivingDuration());
+    }
+
+    private static Prediction toPrediction(DeliveryFeedback record) {
+        return Prediction.builder()
+                .orderId(record.getOrderId())
+                .marketId(record.getMarketId())
+                .createdAt(record.getCreatedAt())
+                .actualDeliveryTime(record.getActualDeliveryTime())
+                .storePrimaryCategory(record.getStorePrimaryCategory())
+                .orderProtocol(record.getOrderProtocol())
+                .totalItems(record.getTotalItems())
+                .subtotal(record.getSubtotal())
+                .numDistinctItems(record.getNumDistinctItems())
+                .minItemPrice(record.getMinItemPrice())
+                .maxItemPrice(record.getMaxItemPrice())
+                .totalOnshiftDashers(record.getTotalOnshiftDashers())
+                .totalBusyDashers(record.getTotalBusyDashers())
+                .totalOutstandingOrders(record.getTotalOutstandingOrders())
+                .estimatedStoreToConsumerDrivingDuration(record.getEstimatedStoreToConsumerDrivingDuration())
+                .build();
+    }
+
+    private static DeliveryFeedback fromCsv(String[] columns, List<String> fields) {
+        DeliveryFeedback record = new DeliveryFeedback();
+        for (int i = 0; i < columns.length && i < fields.size(); i++) {
+            String value = fields.get(i).trim();
+            // pandas writes missing values as empty fields or NA
+            if (value.isEmpty() || value.equalsIgnoreCase("NA") || value.equalsIgnoreCase("NaN")) {
+                continue;
+            }
+            switch (columns[i]) {
+                case "orderid":
+                    record.setOrderId(value);
+                    break;
+                case "marketid":
+                    record.setMarketId(integer(value));
+                    break;
+                case "createdat":
+                    record.setCreatedAt(timestamp(value));
+                    break;
+                case "actualdeliverytime":
+                    record.setActualDeliveryTime(timestamp(value));
+                    break;
+                case "storeprimarycategory":
+                    record.setStorePrimaryCategory(value);
+                    break;
+                case "orderprotocol":
+                    record.setOrderProtocol(integer(value));
+                    break;
+                case "totalitems":
+                    record.setTotalItems(integer(value));
+                    break;
+                case "subtotal":
+                    record.setSubtotal(Double.parseDouble(value));
+                    break;
+                case "numdistinctitems":
+                    record.setNumDistinctItems(integer(value));
+                    break;
+                case "minitemprice":
+                    record.setMinItemPrice(Double.parseDouble(value));
+                    break;
+                case "maxitemprice":
+                    record.setMaxItemPrice(Double.parseDouble(value));
+                    break;
+                case "totalonshiftdashers":
+                    record.setTotalOnshiftDashers(integer(value));
+                    break;
+                case "totalbusydashers":
+                    record.setTotalBusyDashers(integer(value));
+                    break;
+                case "totaloutstandingorders":
+                    record.setTotalOutstandingOrders(integer(value));
+                    break;
+                case "estimatedstoretoconsumerdrivingduration":
+                    record.setEstimatedStoreToConsumerDrivingDuration(integer(value));
+                    break;
+                default:
+                    // Not stored (id, store_id, predicted_delivery_time, ...)
+                    break;
+            }
+        }
+        return record;
+    }
+
+    // Integer columns with missing values come out of pandas as floats ("33.0")
+    private static Integer integer(String value) {
+        try {
+            return Integer.valueOf(value);
+        } catch (NumberFormatException e) {
+            double number = Double.parseDouble(value);
+            if (number != Math.rint(number) || Math.abs(number) > Integer.MAX_VALUE) {
+                throw new NumberFormatException("not an integer: " + value);
+            }
+            return (int) number;
+        }
+    }
+
+    // ISO date-time, with a space instead of the T as in the Porter dataset
+    private static LocalDateTime timestamp(String value) {
+        return LocalDateTime.parse(value.replace(' ', 'T'));
+    }
+
+    // Parsed records waiting to be loaded, with their positions in the input
+    private static final class Chunk {
+
+        private final DeliveryFeedback[] records;
+        private final long[] indexes;
+        private int size;
+
+        private Chunk(int capacity) {
+            records = new DeliveryFeedback[capacity];
+            indexes = new long[capacity];
+        }
+
+        private void add(DeliveryFeedback record, long index) {
+            records[size] = record;
+            indexes[size] = index;
+            size++;
+        }
+
+        private boolean isFull() {
+            return size == records.length;
+        }
+    }
+
+    // Outcome of one ingestion request
+    public final class Summary {
+
+        private final int maxErrors;
+        private final long start = System.nanoTime();
+        private final List<Map<String, Object>> errors = new ArrayList<>();
+        private long received;
+        private long inserted;
+        private long updated;
+        private long duplicates;
+        private long rejected;
+        private String error;
+
+        private Summary(int maxErrors) {
+            this.maxErrors = maxErrors;
+        }
+
+        private void reject(long index, String reason) {
+            rejected++;
+            if (errors.size() < maxErrors) {
+                Map<String, Object> entry = new HashMap<>();
+                entry.put("record", index);
+                entry.put("error", reason);
+                errors.add(entry);
+            }
+        }
+
+        private Summary finish() {
+            meterRegistry.counter("feedback.records", "outcome", "inserted").increment(inserted);
+            meterRegistry.counter("feedback.records", "outcome", "updated").increment(updated);
+            meterRegistry.counter("feedback.records", "outcome", "duplicate").increment(duplicates);
+            meterRegistry.counter("feedback.records", "outcome", "rejected").increment(rejected);
+            logger.info("Delivery feedback: " + received + " received, " + inserted + " inserted, " + updated
+                    + " updated, " + duplicates + " duplicates, " + rejected + " rejected in "
+                    + (System.nanoTime() - start) / 1_000_000 + " ms");
+            return this;
+        }
+
+        // Parse failure that stopped the ingestion, or null; records before it were loaded
+        public String getError() {
+            return error;
+        }
+
+        public Map<String, Object> toMap() {
+            Map<String, Object> response = new HashMap<>();
+            response.put("received", received);
+            response.put("inserted", inserted);
+            response.put("updated", updated);
+            response.put("duplicates", duplicates);
+            response.put("rejected", rejected);
+            response.put("errors", errors);
+            response.put("elapsedMs", (System.nanoTime() - start) / 1_000_000);
+            if (error != null) {
+                response.put("error", error);
+            }
+            return response;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.delivery.prediction.service;
+
+import com.delivery.prediction.analytics.DeliveryTimeSketch;
+import com.delivery.prediction.analytics.MarketTimeSeries;
+import com.delivery.prediction.model.Prediction;
+import com.delivery.prediction.regression.FeatureSchema;
+import com.delivery.prediction.repository.TrainingDataRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Logger;
+
+// Time-bucketed delivery-time statistics per market: the last window-minutes in one-minute
+// buckets and all-time hour-of-day buckets, each holding a mergeable DeliveryTimeSketch.
+// Seeded once from porter_data in the background after startup, then maintained by record() as
+// predictions are saved, so queries merge a few sketches and never touch the table.
+@Service
+public class DeliveryTimeSeriesService implements ApplicationListener<ApplicationReadyEvent> {
+
+    private static final Logger logger = Logger.getLogger(DeliveryTimeSeriesService.class.getName());
+
+    @Autowired
+    private TrainingDataRepository trainingDataRepository;
+
+    @Value("${analytics.timeseries.enabled:true}")
+    private boolean enabled;
+
+    @Value("${analytics.timeseries.window-minutes:1440}")
+    private int windowMinutes;
+
+    private final ConcurrentMap<Integer, MarketTimeSeries> markets = new ConcurrentHashMap<>();
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    private volatile boolean seeded;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getWindowMinutes() {
+        return windowMinutes;
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        if (!enabled) {
+            return;
+        }
+        Thread seeder = new Thread(this::seed, "timeseries-seed");
+        seeder.setDaemon(true);
+        seeder.start();
+    }
+
+    // One pass over the rows that existed at startup; rows saved from here on arrive through record()
+    private void seed() {
+        try {
+            long maxId = trainingDataRepository.findMaxId();
+            long now = currentMinute();
+            long rows = trainingDataRepository.streamDeliveryTimes(maxId, (marketId, createdAt, deliveryMinutes) ->
+                    add(marketId, createdAt, deliveryMinutes, now));
+            seeded = true;
+            logger.info("Delivery time series seeded from " + rows + " records");
+        } catch (Exception e) {
+            logger.severe("Seeding delivery time series failed: " + e.getMessage());
+        }
+    }
+
+    public void record(Prediction data) {
+        if (!enabled || data.getCreatedAt() == null || data.getActualDeliveryTime() == null) {
+            return;
+        }
+        double deliveryMinutes = Duration.between(data.getCreatedAt(), data.getActualDeliveryTime()).toMinutes();
+        add(FeatureSchema.marketId(data.getMarketId()), data.getCreatedAt(), deliveryMinutes, currentMinute());
+    }
+
+    // Statistics of the last minutes (ending now) in buckets of step minutes, oldest first,
+    // for one market or, with a null marketId, all markets combined
+    public Map<String, Object> recent(Integer marketId, int minutes, int step) {
+        int span = Math.min(minutes, windowMinutes);
+        int bucketCount = (span + step - 1) / step;
+        DeliveryTimeSketch[] buckets = new DeliveryTimeSketch[bucketCount];
+        for (int i = 0; i < bucketCount; i++) {
+            buckets[i] = new DeliveryTimeSketch();
+        }
+        long now = currentMinute();
+        for (MarketTimeSeries series : selected(marketId)) {
+            series.window(now, span, step, buckets);
+        }
+
+        DeliveryTimeSketch total = new DeliveryTimeSketch();
+        List<Map<String, Object>> series = new ArrayList<>(bucketCount);
+        long first = now - span + 1;
+        for (int i = 0; i < bucketCount; i++) {
+            total.merge(buckets[i]);
+            Map<String, Object> bucket = buckets[i].toMap();
+            bucket.put("start", toLocalDateTime(first + (long) i * step));
+            series.add(bucket);
+        }
+
+        Map<String, Object> response = scope(marketId);
+        response.put("minutes", span);
+        response.put("stepMinutes", step);
+        response.put("summary", total.toMap());
+        response.put("buckets", series);
+        return response;
+    }
+
+    // All-time statistics by hour of day (local time of the order), for one market or all markets
+    public Map<String, Object> hourOfDay(Integer marketId) {
+        List<Map<String, Object>> hours = new ArrayList<>(24);
+        for (int hour = 0; hour < 24; hour++) {
+            DeliveryTimeSketch sketch = new DeliveryTimeSketch();
+            for (MarketTimeSeries series : selected(marketId)) {
+                sketch.merge(series.hourOfDay(hour));
+            }
+            Map<String, Object> bucket = sketch.toMap();
+            bucket.put("hour", hour);
+            hours.add(bucket);
+        }
+
+        Map<String, Object> response = scope(marketId);
+        response.put("hours", hours);
+        return response;
+    }
+
+    private void add(int marketId, LocalDateTime createdAt, double deliveryMinutes, long nowMinute) {
+        long epochMinute = createdAt.atZone(zone).toEpochSecond() / 60;
+        markets.computeIfAbsent(marketId, id -> new MarketTimeSeries(windowMinutes))
+                .add(epochMinute, createdAt.getHour(), deliveryMinutes, nowMinute);
+    }
+
+    private List<MarketTimeSeries> selected(Integer marketId) {
+        if (marketId == null) {
+            return new ArrayList<>(markets.values());
+        }
+        MarketTimeSeries series = markets.get(marketId);
+        return series == null ? List.of() : List.of(series);
+    }
+
+    private Map<String, Object> scope(Integer marketId) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("marketId", marketId == null ? "all" : marketId);
+        // Until the background seed has finished only recent saves are included
+        response.put("complete", seeded);
+        return response;
+    }
+
+    private long currentMinute() {
+        return System.currentTimeMillis() / 60_000;
+    }
+
+    private LocalDateTime toLocalDateTime(long epochMinute) {
+        return LocalDateTime.ofInstant(Instant.ofEpochSecond(epochMinute * 60), zone);
+    }
+}
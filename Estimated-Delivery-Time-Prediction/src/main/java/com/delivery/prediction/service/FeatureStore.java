@@ -0,0 +1,90 @@
+package com.delivery.prediction.service;
+
+import com.delivery.prediction.features.FeatureTable;
+import com.delivery.prediction.repository.TrainingDataRepository;
+import com.delivery.prediction.repository.TrainingDataRepository.TrainingRowHandler;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+
+// In-memory columnar copy of porter_data used by training, evaluation and analytics.
+// The first refresh loads every trainable row; later refreshes only read rows with an id above
+// the current snapshot's highest id. When disabled, scans stream from the database instead.
+@Service
+public class FeatureStore {
+
+    private static final Logger logger = Logger.getLogger(FeatureStore.class.getName());
+
+    @Autowired
+    private TrainingDataRepository trainingDataRepository;
+
+    @Value("${features.store.enabled:true}")
+    private boolean enabled;
+
+    private volatile FeatureTable table = FeatureTable.empty();
+
+    // Set when rows below the snapshot's highest id became trainable, which an incremental refresh
+    // cannot see (delivery feedback for earlier predictions)
+    private volatile boolean stale;
+
+    // Serialises refreshes. A lock rather than synchronized, so a virtual thread blocked on the
+    // database inside refresh() does not pin its carrier thread
+    private final ReentrantLock refreshLock = new ReentrantLock();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Pull in rows added since the last refresh and publish the extended snapshot
+    public FeatureTable refresh() {
+        refreshLock.lock();
+        try {
+            FeatureTable current = table;
+            if (stale) {
+                stale = false;
+                current = FeatureTable.empty();
+            }
+            FeatureTable.Appender appender = current.appender();
+            long added = trainingDataRepository.streamRowsAfter(current.getMaxId(), appender::add);
+            if (added > 0 || current != table) {
+                table = appender.build();
+                logger.info("Feature store refreshed: " + added + " new rows, " + table.getRows() + " total");
+            }
+            return table;
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    // Drop the snapshot and load every row again, for when existing rows have changed
+    public FeatureTable reload() {
+        refreshLock.lock();
+        try {
+            table = FeatureTable.empty();
+            return refresh();
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    // Make the next refresh load every row again
+    public void markStale() {
+        stale = true;
+    }
+
+    public FeatureTable getTable() {
+        return table;
+    }
+
+    // Scan every trainable row: from the refreshed columnar snapshot when enabled,
+    // otherwise straight from a database cursor. Returns the number of rows scanned.
+    public long forEachRow(TrainingRowHandler handler) {
+        if (enabled) {
+            return refresh().forEachRow(handler);
+        }
+        return trainingDataRepository.streamTrainingRows(handler);
+    }
+}
@@ -0,0 +1,64 @@
+package com.delivery.prediction.service;
+
+import com.delivery.prediction.regression.ModelArtifact;
+import com.delivery.prediction.regression.ModelSnapshot;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.logging.Logger;
+
+// Keeps the active models on disk in the ModelArtifact format so a restart loads them instead of
+// retraining. Whatever snapshot becomes active (new training or rollback) is written through.
+@Service
+public class ModelArtifactStore implements ApplicationListener<ModelPublishedEvent> {
+
+    private static final Logger logger = Logger.getLogger(ModelArtifactStore.class.getName());
+
+    @Value("${model.artifact.path:trained_model/delivery-models.bin}")
+    private String artifactPath;
+
+    // Models from the artifact, or null if there is none or it cannot be used
+    public ModelSnapshot load() {
+        Path path = Paths.get(artifactPath);
+        try (InputStream in = Files.newInputStream(path)) {
+            ModelSnapshot models = ModelArtifact.read(in);
+            logger.info("Loaded models trained at " + models.getTrainedAt() + " on " + models.getTrainingRows()
+                    + " rows from " + path.toAbsolutePath());
+            return models;
+        } catch (NoSuchFileException e) {
+            logger.info("No model artifact at " + path.toAbsolutePath());
+        } catch (IOException e) {
+            logger.warning("Ignoring model artifact " + path.toAbsolutePath() + ": " + e.getMessage());
+        }
+        return null;
+    }
+
+    // Write to a temporary file and move it into place, so a crash never leaves a half-written artifact
+    public void save(ModelSnapshot models) throws IOException {
+        Path path = Paths.get(artifactPath).toAbsolutePath();
+        Files.createDirectories(path.getParent());
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(temporary)) {
+            ModelArtifact.write(models, out);
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public void onApplicationEvent(ModelPublishedEvent event) {
+        try {
+            save(event.getModels());
+        } catch (IOException e) {
+            logger.warning("Failed to save model artifact: " + e.getMessage());
+        }
+    }
+}
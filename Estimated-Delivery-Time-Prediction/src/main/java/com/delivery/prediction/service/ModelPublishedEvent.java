@@ -0,0 +1,21 @@
+package com.delivery.prediction.service;
+
+import com.delivery.prediction.regression.ModelSnapshot;
+import org.springframework.context.ApplicationEvent;
+
+// Published by ModelRegistry whenever a different model snapshot becomes active.
+// Listeners implement ApplicationListener rather than @EventListener so they also receive the
+// first publish, which happens while singletons are still being initialised.
+public class ModelPublishedEvent extends ApplicationEvent {
+
+    private final ModelSnapshot models;
+
+    public ModelPublishedEvent(Object source, ModelSnapshot models) {
+        super(source);
+        this.models = models;
+    }
+
+    public ModelSnapshot getModels() {
+        return models;
+    }
+}
@@ -0,0 +1,119 @@
+package com.delivery.prediction.service;
+
+import com.delivery.prediction.regression.ModelSnapshot;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+
+// Holds the versioned model snapshots and the one currently serving predictions.
+// The predict path only performs a volatile read of the active snapshot; publishing and
+// rolling back swap that reference and never block readers. Publishes and rollbacks are
+// serialised with the delivery of their ModelPublishedEvent, so listeners receive the snapshots
+// in the order they became active and the last event always carries the active one.
+@Service
+public class ModelRegistry {
+
+    private static final Logger logger = Logger.getLogger(ModelRegistry.class.getName());
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${model.registry.history-size:10}")
+    private int historySize;
+
+    private final AtomicLong versions = new AtomicLong();
+
+    // Newest first; guarded by this
+    private final Deque<ModelSnapshot> history = new ArrayDeque<>();
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private volatile ModelSnapshot active;
+
+    // Held from swapping the active snapshot until its event is delivered, so listeners see the
+    // snapshots in the order they became active. A lock rather than synchronized, so a virtual
+    // thread blocked in a listener does not pin its carrier thread
+    private final ReentrantLock publishLock = new ReentrantLock();
+
+    @PostConstruct
+    public void registerMeters() {
+        // Lets dashboards line latency changes up with model publishes and rollbacks
+        Gauge.builder("model.active.version", this, registry -> registry.active == null ? 0 : registry.active.getVersion())
+                .description("Version of the models serving predictions")
+                .register(meterRegistry);
+    }
+
+    public ModelSnapshot getActive() {
+        return active;
+    }
+
+    // Assign the next version to a freshly trained snapshot, keep it in the history and make it active
+    public ModelSnapshot publish(ModelSnapshot trained) {
+        publishLock.lock();
+        try {
+            ModelSnapshot snapshot = trained.withVersion(versions.incrementAndGet());
+            synchronized (this) {
+                history.addFirst(snapshot);
+                while (history.size() > historySize) {
+                    ModelSnapshot evicted = history.removeLast();
+                    // Never evict the snapshot that is serving
+                    if (evicted == active) {
+                        history.addLast(evicted);
+                        break;
+                    }
+                }
+                active = snapshot;
+            }
+            logger.info("Published model version " + snapshot.getVersion() + " trained on " + snapshot.getTrainingRows() + " rows");
+            eventPublisher.publishEvent(new ModelPublishedEvent(this, snapshot));
+            return snapshot;
+        } finally {
+            publishLock.unlock();
+        }
+    }
+
+    // Make an earlier version active again; false if it is no longer in the history
+    public boolean activate(long version) {
+        publishLock.lock();
+        try {
+            ModelSnapshot target = null;
+            synchronized (this) {
+                for (ModelSnapshot snapshot : history) {
+                    if (snapshot.getVersion() == version) {
+                        target = snapshot;
+                        break;
+                    }
+                }
+                if (target == null) {
+                    return false;
+                }
+                if (target == active) {
+                    return true;
+                }
+                active = target;
+            }
+            logger.info("Rolled back to model version " + version);
+            eventPublisher.publishEvent(new ModelPublishedEvent(this, target));
+            return true;
+        } finally {
+            publishLock.unlock();
+        }
+    }
+
+    public synchronized List<ModelSnapshot> getVersions() {
+        return new ArrayList<>(history);
+    }
+}
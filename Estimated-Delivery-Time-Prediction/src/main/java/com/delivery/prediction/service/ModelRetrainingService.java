@@ -0,0 +1,82 @@
+package com.delivery.prediction.service;
+
+import com.delivery.prediction.regression.ModelSnapshot;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+// Retrains the models in the background and publishes the result to the registry.
+// Training runs on its own single low-priority thread so it never occupies a request thread,
+// and at most one retrain is in flight at a time.
+@Service
+public class ModelRetrainingService {
+
+    private static final Logger logger = Logger.getLogger(ModelRetrainingService.class.getName());
+
+    @Autowired
+    private ModelTrainer modelTrainer;
+
+    @Autowired
+    private ModelRegistry modelRegistry;
+
+    @Autowired
+    private FeatureStore featureStore;
+
+    @Value("${model.retrain.enabled:false}")
+    private boolean scheduledRetrainEnabled;
+
+    private final ExecutorService trainingExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "model-training");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    private final AtomicBoolean retraining = new AtomicBoolean();
+
+    // Start a retrain unless one is already running; returns whether one was started
+    public boolean requestRetrain() {
+        if (!retraining.compareAndSet(false, true)) {
+            return false;
+        }
+        trainingExecutor.execute(() -> {
+            try {
+                modelRegistry.publish(modelTrainer.train());
+            } catch (Exception e) {
+                logger.severe("Model retraining failed: " + e.getMessage());
+            } finally {
+                retraining.set(false);
+            }
+        });
+        return true;
+    }
+
+    public boolean isRetraining() {
+        return retraining.get();
+    }
+
+    // Periodic retrain, skipped when no rows have arrived since the active models were trained
+    @Scheduled(fixedDelayString = "${model.retrain.interval-ms:3600000}", initialDelayString = "${model.retrain.interval-ms:3600000}")
+    public void scheduledRetrain() {
+        if (!scheduledRetrainEnabled) {
+            return;
+        }
+        ModelSnapshot active = modelRegistry.getActive();
+        if (active != null && featureStore.isEnabled() && featureStore.refresh().getRows() <= active.getTrainingRows()) {
+            return;
+        }
+        requestRetrain();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        trainingExecutor.shutdownNow();
+    }
+}
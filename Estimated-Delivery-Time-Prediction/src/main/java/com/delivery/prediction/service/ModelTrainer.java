@@ -0,0 +1,410 @@
+package com.delivery.prediction.service;
+
+import com.delivery.prediction.features.FeatureTable;
+import com.delivery.prediction.regression.FeatureSchema;
+import com.delivery.prediction.regression.LinearModel;
+import com.delivery.prediction.regression.ModelSnapshot;
+import com.delivery.prediction.regression.ParameterCovariance;
+import com.delivery.prediction.regression.PolynomialFitter;
+import com.delivery.prediction.regression.PolynomialModel;
+import com.delivery.prediction.regression.RegressionModel;
+import com.delivery.prediction.regression.SegmentedModel;
+import com.delivery.prediction.repository.TrainingDataRepository;
+import com.delivery.prediction.repository.TrainingDataRepository.TrainingRowHandler;
+import org.apache.commons.math3.exception.MathIllegalArgumentException;
+import org.apache.commons.math3.stat.regression.MillerUpdatingRegression;
+import org.apache.commons.math3.stat.regression.RegressionResults;
+import org.apache.commons.math3.stat.regression.SimpleRegression;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+import java.util.logging.Logger;
+
+// Fits the three regression models from the feature store and compiles them into a ModelSnapshot.
+// Stateless apart from its fork-join pool, so it is safe to run off the request threads.
+@Service
+public class ModelTrainer {
+
+    private static final Logger logger = Logger.getLogger(ModelTrainer.class.getName());
+
+    // Inputs of the multiple regression, in parameter order
+    private static final int[] MULTIPLE_REGRESSION_FEATURES = {
+            FeatureSchema.TOTAL_ITEMS, FeatureSchema.SUBTOTAL, FeatureSchema.DRIVING_DURATION,
+            FeatureSchema.ONSHIFT_DASHERS, FeatureSchema.BUSY_DASHERS, FeatureSchema.OUTSTANDING_ORDERS
+    };
+
+    @Autowired
+    private FeatureStore featureStore;
+
+    @Autowired
+    private TrainingDataRepository trainingDataRepository;
+
+    @Value("${training.polynomial.max-degree:4}")
+    private int polynomialMaxDegree;
+
+    @Value("${training.polynomial.folds:5}")
+    private int polynomialFolds;
+
+    // Threads for the polynomial fit and its cross-validation; 0 uses every core
+    @Value("${training.parallelism:0}")
+    private int parallelism;
+
+    // Per-market linear models (and per store category within a market when by-category is set),
+    // each fitted only when its segment has at least min-rows rows; needs the feature store
+    @Value("${training.segments.enabled:false}")
+    private boolean segmentsEnabled;
+
+    @Value("${training.segments.by-category:false}")
+    private boolean segmentsByCategory;
+
+    @Value("${training.segments.min-rows:500}")
+    private int segmentMinRows;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private ForkJoinPool trainingPool;
+
+    private Timer trainingTimer;
+    private volatile double lastRowsPerSecond;
+    private volatile long lastTrainingRows;
+
+    @PostConstruct
+    public void start() {
+        trainingPool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        trainingTimer = Timer.builder("model.training.duration")
+                .description("Time to fit all models")
+                .register(meterRegistry);
+        Gauge.builder("model.training.rows", this, trainer -> trainer.lastTrainingRows)
+                .description("Rows used by the last training")
+                .register(meterRegistry);
+        Gauge.builder("model.training.rows.per.second", this, trainer -> trainer.lastRowsPerSecond)
+                .description("Training throughput of the last training")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        trainingPool.shutdownNow();
+    }
+
+    // Refit every model on the current data
+    public ModelSnapshot train() {
+        long start = System.nanoTime();
+        SimpleRegression simpleRegression = new SimpleRegression();
+
+        // Single pass over the columnar feature snapshot (or a database cursor when the store is
+        // disabled): every row updates the accumulators, nothing is copied per row. The multiple
+        // regression only sees rows with every input present (supply counts are often missing), and
+        // feature means are taken over the rows where the feature is present.
+        MillerUpdatingRegression multipleAccumulator = new MillerUpdatingRegression(MULTIPLE_REGRESSION_FEATURES.length, true);
+        double[] multipleRow = new double[MULTIPLE_REGRESSION_FEATURES.length];
+        double[] featureSums = FeatureSchema.newVector();
+        long[] featureCounts = new long[FeatureSchema.SIZE];
+        long[] completeRows = {0};
+        TrainingRowHandler linearHandler = (marketId, features, deliveryMinutes) -> {
+            for (int feature = 0; feature < featureSums.length; feature++) {
+                if (!Double.isNaN(features[feature])) {
+                    featureSums[feature] += features[feature];
+                    featureCounts[feature]++;
+                }
+            }
+            simpleRegression.addData(features[FeatureSchema.DRIVING_DURATION], deliveryMinutes);
+            if (copyComplete(features, multipleRow)) {
+                multipleAccumulator.addObservation(multipleRow, deliveryMinutes);
+                completeRows[0]++;
+            }
+        };
+
+        // The polynomial fit works on the snapshot's own columns when the store is enabled; on the
+        // cursor path it collects its power sums during the same pass, so no row is kept
+        PolynomialFitter polynomialFitter = new PolynomialFitter(polynomialMaxDegree, polynomialFolds, trainingPool);
+        PolynomialFitter.Accumulator polynomialAccumulator = null;
+        int rows;
+        FeatureTable table = null;
+        if (featureStore.isEnabled()) {
+            table = featureStore.refresh();
+            rows = (int) table.forEachRow(linearHandler);
+        } else {
+            PolynomialFitter.Accumulator accumulator = polynomialFitter.accumulator();
+            rows = (int) trainingDataRepository.streamTrainingRows((marketId, features, minutes) -> {
+                linearHandler.accept(marketId, features, minutes);
+                accumulator.add(features[FeatureSchema.DRIVING_DURATION], minutes);
+            });
+            polynomialAccumulator = accumulator;
+        }
+        logger.info(rows + " records trained");
+
+        double[] featureMeans = featureSums.clone();
+        for (int feature = 0; feature < featureMeans.length; feature++) {
+            featureMeans[feature] = featureCounts[feature] == 0 ? 0.0 : featureMeans[feature] / featureCounts[feature];
+        }
+        double[] fillValues = new double[MULTIPLE_REGRESSION_FEATURES.length];
+        for (int i = 0; i < fillValues.length; i++) {
+            fillValues[i] = featureMeans[MULTIPLE_REGRESSION_FEATURES[i]];
+        }
+        MillerUpdatingRegression multipleFit = multipleAccumulator;
+        if (completeRows[0] <= MULTIPLE_REGRESSION_FEATURES.length + 1) {
+            // Too few rows carry supply counts to fit their terms: refit on every row with the
+            // missing counts set to their means, the same values the model fills in when serving
+            logger.warning("Only " + completeRows[0] + " training rows have supply counts; imputing their means");
+            MillerUpdatingRegression imputed = new MillerUpdatingRegression(MULTIPLE_REGRESSION_FEATURES.length, true);
+            TrainingRowHandler imputingHandler = (marketId, features, minutes) -> {
+                for (int i = 0; i < multipleRow.length; i++) {
+                    double value = features[MULTIPLE_REGRESSION_FEATURES[i]];
+                    multipleRow[i] = Double.isNaN(value) ? fillValues[i] : value;
+                }
+                imputed.addObservation(multipleRow, minutes);
+            };
+            if (table != null) {
+                table.forEachRow(imputingHandler);
+            } else {
+                trainingDataRepository.streamTrainingRows(imputingHandler);
+            }
+            multipleFit = imputed;
+        }
+
+        // Solve each model once and compile the coefficients
+        LinearModel simpleModel = simpleModel(simpleRegression, featureMeans[FeatureSchema.DRIVING_DURATION]);
+        RegressionModel simple = simpleModel;
+        RegressionModel multiple = trainMultipleRegressionModel(multipleFit, fillValues);
+        if (segmentsEnabled) {
+            if (table != null) {
+                // The global models stay as the fallback of every sparse or unseen segment
+                RegressionModel[] segmented = trainSegmentModels(table, simpleModel, multiple);
+                simple = segmented[0];
+                multiple = segmented[1];
+            } else {
+                logger.warning("Segment models need features.store.enabled=true; training global models only");
+            }
+        }
+        // Polynomial in driving duration, degree picked by k-fold cross-validation on the training pool
+        PolynomialModel polynomial = table != null
+                ? polynomialFitter.fit(FeatureSchema.DRIVING_DURATION, table.getColumns()[FeatureSchema.DRIVING_DURATION],
+                        table.getDeliveryMinutes(), rows)
+                : polynomialAccumulator.fit(FeatureSchema.DRIVING_DURATION);
+        ModelSnapshot snapshot = new ModelSnapshot(0, LocalDateTime.now(), rows, simple, multiple, polynomial, featureMeans);
+
+        long elapsed = System.nanoTime() - start;
+        trainingTimer.record(elapsed, TimeUnit.NANOSECONDS);
+        lastTrainingRows = rows;
+        lastRowsPerSecond = rows / (elapsed / 1e9);
+        return snapshot;
+    }
+
+    private LinearModel trainMultipleRegressionModel(MillerUpdatingRegression accumulator, double[] fillValues) {
+        // Solve the least-squares problem from the updated QR factorisation; predictions only need the coefficients
+        RegressionResults results = accumulator.regress();
+        // Parameters are [intercept, totalItems, subtotal, estimatedDrivingDuration, onshiftDashers,
+        // busyDashers, outstandingOrders]. A regressor that is collinear with the others (say, supply
+        // counts that were never recorded) comes back as NaN and is dropped from the model.
+        double[] parameters = results.getParameterEstimates();
+        for (int i = 0; i < parameters.length; i++) {
+            if (!Double.isFinite(parameters[i])) {
+                logger.warning("Dropping degenerate multiple regression term " + (i == 0 ? "intercept"
+                        : FeatureSchema.name(MULTIPLE_REGRESSION_FEATURES[i - 1])));
+                parameters[i] = 0.0;
+            }
+        }
+        return LinearModel.fromParameters(parameters, covariance(results), fillValues, MULTIPLE_REGRESSION_FEATURES);
+    }
+
+    // Copy the multiple regression inputs of a row; false when any of them is missing
+    private static boolean copyComplete(double[] features, double[] row) {
+        for (int i = 0; i < row.length; i++) {
+            double value = features[MULTIPLE_REGRESSION_FEATURES[i]];
+            if (Double.isNaN(value)) {
+                return false;
+            }
+            row[i] = value;
+        }
+        return true;
+    }
+
+    // Simple regression with the covariance of (intercept, slope): the variances are the squared
+    // standard errors and cov = -mean(x) * var(slope)
+    private static LinearModel simpleModel(SimpleRegression regression, double meanDrivingDuration) {
+        ParameterCovariance covariance = null;
+        long degreesOfFreedom = regression.getN() - 2;
+        double slopeVariance = regression.getSlopeStdErr() * regression.getSlopeStdErr();
+        double interceptVariance = regression.getInterceptStdErr() * regression.getInterceptStdErr();
+        if (degreesOfFreedom > 0 && Double.isFinite(slopeVariance) && Double.isFinite(interceptVariance)) {
+            double cross = -meanDrivingDuration * slopeVariance;
+            covariance = new ParameterCovariance(2, new double[]{interceptVariance, cross, slopeVariance},
+                    regression.getMeanSquareError(), degreesOfFreedom);
+        }
+        return new LinearModel(regression.getIntercept(), new int[]{FeatureSchema.DRIVING_DURATION},
+                new double[]{regression.getSlope()}, covariance);
+    }
+
+    // Covariance of the multiple regression parameters, as computed by the QR-based solver.
+    // Redundant regressors (NaN estimates) do not count towards the fitted parameters.
+    private static ParameterCovariance covariance(RegressionResults results) {
+        double[] estimates = results.getParameterEstimates();
+        int parameters = estimates.length;
+        long degreesOfFreedom = results.getN() - Arrays.stream(estimates).filter(Double::isFinite).count();
+        if (degreesOfFreedom <= 0) {
+            return null;
+        }
+        double[][] matrix = new double[parameters][parameters];
+        for (int i = 0; i < parameters; i++) {
+            for (int j = 0; j <= i; j++) {
+                matrix[i][j] = results.getCovarianceOfParameters(i, j);
+            }
+        }
+        return ParameterCovariance.fromMatrix(matrix, results.getMeanSquareError(), degreesOfFreedom);
+    }
+
+    // Group the rows of the table by segment and fit the simple and multiple regression of every
+    // segment with enough rows as its own task on the training pool. Returns {simple, multiple}.
+    private RegressionModel[] trainSegmentModels(FeatureTable table, RegressionModel simpleFallback,
+                                                 RegressionModel multipleFallback) {
+        double[][] columns = table.getColumns();
+        double[] minutes = table.getDeliveryMinutes();
+        int rows = table.getRows();
+
+        // Two passes: count every segment, then collect the row numbers of those worth fitting
+        Map<Long, int[]> counts = new HashMap<>();
+        for (int row = 0; row < rows; row++) {
+            forEachSegment(columns, row, key -> counts.computeIfAbsent(key, k -> new int[1])[0]++);
+        }
+        Map<Long, RowList> segments = new HashMap<>();
+        for (Map.Entry<Long, int[]> count : counts.entrySet()) {
+            if (count.getValue()[0] >= segmentMinRows) {
+                segments.put(count.getKey(), new RowList(count.getValue()[0]));
+            }
+        }
+        for (int row = 0; row < rows; row++) {
+            int current = row;
+            forEachSegment(columns, row, key -> {
+                RowList segment = segments.get(key);
+                if (segment != null) {
+                    segment.rows[segment.size++] = current;
+                }
+            });
+        }
+
+        List<Long> keys = new ArrayList<>(segments.keySet());
+        List<Callable<LinearModel[]>> tasks = new ArrayList<>(keys.size());
+        for (Long key : keys) {
+            RowList segment = segments.get(key);
+            tasks.add(() -> fitSegment(columns, minutes, segment.rows));
+        }
+
+        long[] fittedKeys = new long[keys.size()];
+        RegressionModel[] simpleModels = new RegressionModel[keys.size()];
+        RegressionModel[] multipleModels = new RegressionModel[keys.size()];
+        int fitted = 0;
+        try {
+            List<Future<LinearModel[]>> results = trainingPool.invokeAll(tasks);
+            for (int i = 0; i < results.size(); i++) {
+                LinearModel[] models = results.get(i).get();
+                if (models != null) {
+                    fittedKeys[fitted] = keys.get(i);
+                    simpleModels[fitted] = models[0];
+                    multipleModels[fitted] = models[1];
+                    fitted++;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while fitting segment models", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Segment model fit failed", e.getCause());
+        }
+        logger.info("Fitted " + fitted + " segment models (" + (counts.size() - fitted)
+                + " segments use the global models)");
+
+        return new RegressionModel[]{
+                new SegmentedModel(simpleFallback, Arrays.copyOf(fittedKeys, fitted), Arrays.copyOf(simpleModels, fitted)),
+                new SegmentedModel(multipleFallback, Arrays.copyOf(fittedKeys, fitted), Arrays.copyOf(multipleModels, fitted))
+        };
+    }
+
+    // Segments a row belongs to: its market and, with by-category, its (market, category) pair
+    private void forEachSegment(double[][] columns, int row, LongConsumer action) {
+        int marketId = (int) columns[FeatureSchema.MARKET_ID][row];
+        action.accept(SegmentedModel.key(marketId, SegmentedModel.ANY_CATEGORY));
+        if (segmentsByCategory) {
+            action.accept(SegmentedModel.key(marketId, (int) columns[FeatureSchema.STORE_CATEGORY][row]));
+        }
+    }
+
+    // {simple, multiple} fitted on the given rows, or null when the segment's data is degenerate
+    // (for example a constant input, or too few rows with supply counts), in which case it is left
+    // to the global models. As globally, the multiple regression only uses complete rows.
+    private static LinearModel[] fitSegment(double[][] columns, double[] minutes, int[] rows) {
+        SimpleRegression simple = new SimpleRegression();
+        MillerUpdatingRegression multiple = new MillerUpdatingRegression(MULTIPLE_REGRESSION_FEATURES.length, true);
+        double[] features = FeatureSchema.newVector();
+        double[] multipleRow = new double[MULTIPLE_REGRESSION_FEATURES.length];
+        double[] fillValues = new double[MULTIPLE_REGRESSION_FEATURES.length];
+        double drivingDurationSum = 0.0;
+        long completeRows = 0;
+        for (int row : rows) {
+            simple.addData(columns[FeatureSchema.DRIVING_DURATION][row], minutes[row]);
+            drivingDurationSum += columns[FeatureSchema.DRIVING_DURATION][row];
+            for (int feature : MULTIPLE_REGRESSION_FEATURES) {
+                features[feature] = columns[feature][row];
+            }
+            if (copyComplete(features, multipleRow)) {
+                multiple.addObservation(multipleRow, minutes[row]);
+                for (int i = 0; i < fillValues.length; i++) {
+                    fillValues[i] += multipleRow[i];
+                }
+                completeRows++;
+            }
+        }
+        if (!Double.isFinite(simple.getSlope()) || !Double.isFinite(simple.getIntercept())
+                || completeRows <= MULTIPLE_REGRESSION_FEATURES.length + 1) {
+            return null;
+        }
+        for (int i = 0; i < fillValues.length; i++) {
+            fillValues[i] /= completeRows;
+        }
+        try {
+            RegressionResults results = multiple.regress();
+            double[] parameters = results.getParameterEstimates();
+            for (double parameter : parameters) {
+                if (!Double.isFinite(parameter)) {
+                    return null;
+                }
+            }
+            return new LinearModel[]{
+                    simpleModel(simple, drivingDurationSum / rows.length),
+                    LinearModel.fromParameters(parameters, covariance(results), fillValues, MULTIPLE_REGRESSION_FEATURES)
+            };
+        } catch (MathIllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    // Row numbers of one segment, sized by the counting pass
+    private static final class RowList {
+
+        private final int[] rows;
+        private int size;
+
+        private RowList(int capacity) {
+            rows = new int[capacity];
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.delivery.prediction.service;
+
+import com.delivery.prediction.regression.ModelSnapshot;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+// "models" health contributor: DOWN until a model snapshot is active. Part of the readiness
+// group, so with background startup the pod only receives traffic once it can score.
+@Component("models")
+public class ModelsHealthIndicator implements HealthIndicator {
+
+    @Autowired
+    private ModelRegistry modelRegistry;
+
+    @Autowired
+    private PredictionService predictionService;
+
+    @Override
+    public Health health() {
+        ModelSnapshot active = modelRegistry.getActive();
+        if (active != null) {
+            return Health.up()
+                    .withDetail("version", active.getVersion())
+                    .withDetail("trainedAt", active.getTrainedAt())
+                    .build();
+        }
+        String error = predictionService.getModelLoadError();
+        return error == null
+                ? Health.down().withDetail("status", "loading").build()
+                : Health.down().withDetail("status", "failed").withDetail("error", error).build();
+    }
+}
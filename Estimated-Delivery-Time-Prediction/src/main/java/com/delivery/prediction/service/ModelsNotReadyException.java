@@ -0,0 +1,13 @@
+package com.delivery.prediction.service;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+// No model snapshot has been published yet (background startup still loading); surfaces as 503
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class ModelsNotReadyException extends RuntimeException {
+
+    public ModelsNotReadyException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,105 @@
+package com.delivery.prediction.service;
+
+import com.delivery.prediction.model.Prediction;
+import com.delivery.prediction.repository.PredictionExportRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Writes porter_data rows straight from a database cursor to an output stream, one row at a
+// time, so an export of any size runs in constant memory.
+@Service
+public class PredictionExportService {
+
+    public enum Format {
+        NDJSON,
+        CSV
+    }
+
+    private static final String CSV_HEADER = "id,market_id,created_at,actual_delivery_time,store_primary_category,"
+            + "order_protocol,total_items,subtotal,num_distinct_items,min_item_price,max_item_price,"
+            + "total_onshift_dashers,total_busy_dashers,total_outstanding_orders,"
+            + "estimated_store_to_consumer_driving_duration,order_id,predicted_delivery_time";
+
+    @Autowired
+    private PredictionExportRepository predictionExportRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    public List<Prediction> findPage(long afterId, int limit, Integer marketId, LocalDateTime from, LocalDateTime to) {
+        return predictionExportRepository.findPage(afterId, limit, marketId, from, to);
+    }
+
+    // Stream every matching row in id order and return the number of rows written
+    public long export(Format format, Integer marketId, LocalDateTime from, LocalDateTime to, OutputStream out) throws IOException {
+        if (format == Format.CSV) {
+            return exportCsv(marketId, from, to, out);
+        }
+        try (SequenceWriter writer = objectMapper.writerFor(Prediction.class).withRootValueSeparator("\n").writeValues(out)) {
+            long rows = predictionExportRepository.streamAll(marketId, from, to, writer::write);
+            out.write('\n');
+            return rows;
+        }
+    }
+
+    private long exportCsv(Integer marketId, LocalDateTime from, LocalDateTime to, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        writer.write(CSV_HEADER);
+        writer.write('\n');
+        long rows = predictionExportRepository.streamAll(marketId, from, to, row -> {
+            writer.write(String.valueOf(row.getId()));
+            field(writer, row.getMarketId());
+            field(writer, row.getCreatedAt());
+            field(writer, row.getActualDeliveryTime());
+            writer.write(',');
+            if (row.getStorePrimaryCategory() != null) {
+                writer.write(quote(row.getStorePrimaryCategory()));
+            }
+            field(writer, row.getOrderProtocol());
+            field(writer, row.getTotalItems());
+            field(writer, row.getSubtotal());
+            field(writer, row.getNumDistinctItems());
+            field(writer, row.getMinItemPrice());
+            field(writer, row.getMaxItemPrice());
+            field(writer, row.getTotalOnshiftDashers());
+            field(writer, row.getTotalBusyDashers());
+            field(writer, row.getTotalOutstandingOrders());
+            field(writer, row.getEstimatedStoreToConsumerDrivingDuration());
+            writer.write(',');
+            if (row.getOrderId() != null) {
+                writer.write(quote(row.getOrderId()));
+            }
+            field(writer, row.getPredictedDeliveryTime());
+            writer.write('\n');
+        });
+        writer.flush();
+        return rows;
+    }
+
+    // Comma followed by the value; nulls are written as empty fields
+    private static void field(Writer writer, Object value) throws IOException {
+        writer.write(',');
+        if (value != null) {
+            writer.write(value.toString());
+        }
+    }
+
+    // RFC 4180 quoting for free-text fields
+    private static String quote(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
@@ -1,139 +1,333 @@
 package com.delivery.prediction.service;
 
+import com.delivery.prediction.cache.PredictionCache;
+import com.delivery.prediction.cache.PredictionCacheKey;
 import com.delivery.prediction.model.Prediction;
+import com.delivery.prediction.regression.FeatureSchema;
+import com.delivery.prediction.regression.ModelSnapshot;
+import com.delivery.prediction.regression.ModelType;
+import com.delivery.prediction.regression.PredictionExplanation;
+import com.delivery.prediction.repository.PredictionBatchWriter;
 import com.delivery.prediction.repository.PredictionRepository;
-import org.apache.commons.math3.stat.regression.SimpleRegression;
-import org.apache.commons.math3.stat.regression.OLSMultipleLinearRegression;
-import org.apache.commons.math3.analysis.polynomials.PolynomialFunction;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.commons.math3.distribution.TDistribution;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.PostConstruct;
-import java.io.*;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
 
 @Service
-public class PredictionService {
+public class PredictionService implements ApplicationListener<ApplicationReadyEvent> {
 
-    private static final String MODEL_FILE_PATH = "src/main/java/com/delivery/prediction/trained_model/model.ser";  // Path to save/load the model file
+    private static final Logger logger = Logger.getLogger(PredictionService.class.getName());
 
     @Autowired
     private PredictionRepository deliveryDataRepository;
 
-    private SimpleRegression simpleRegression;
-    private OLSMultipleLinearRegression multipleLinearRegression;
-    private PolynomialFunction polynomialRegression;
+    @Autowired
+    private PredictionBatchWriter predictionBatchWriter;
+
+    @Autowired
+    private PredictionWriteBehindQueue writeBehindQueue;
+
+    @Autowired
+    private AnalyticsAggregateStore analyticsAggregateStore;
+
+    @Autowired
+    private ModelTrainer modelTrainer;
+
+    @Autowired
+    private ModelRegistry modelRegistry;
+
+    @Autowired
+    private ModelArtifactStore modelArtifactStore;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private PredictionCache predictionCache;
+
+    @Autowired
+    private DatabaseConcurrencyLimiter databaseLimiter;
+
+    @Autowired
+    private SupplySnapshotService supplySnapshotService;
+
+    @Autowired
+    private DeliveryTimeSeriesService deliveryTimeSeriesService;
+
+    // Load (or train) the models on a background thread once the application is up instead of
+    // blocking startup; requests get a 503 and readiness stays DOWN until they are published
+    @Value("${model.startup.background:false}")
+    private boolean backgroundStartup;
+
+    private volatile String modelLoadError;
+
+    // Two-sided coverage of the prediction intervals returned with explain=true
+    @Value("${prediction.interval.confidence:0.9}")
+    private double intervalConfidence;
+
+    // Student-t critical value by residual degrees of freedom (one per fitted model at most)
+    private final Map<Long, Double> criticalValues = new ConcurrentHashMap<>();
+
+    // Built once so the predict path does not look meters up by name
+    private final Map<ModelType, Timer> predictionTimers = new EnumMap<>(ModelType.class);
+    private Timer batchTimer;
+    private Timer saveTimer;
+    private Timer batchSaveTimer;
 
     @PostConstruct
     public void initializeModel() {
-        // Load pre-trained SimpleRegression model if available
-        try {
-            simpleRegression = loadSimpleModel(MODEL_FILE_PATH);
-            System.out.println("Loaded pre-trained simple regression model.");
-        } catch (IOException | ClassNotFoundException e) {
-            // No pre-trained model, train a new one
-            System.out.println("No pre-trained simple regression model found. Training a new model.");
-            simpleRegression = new SimpleRegression();
-            List<Prediction> historicalData = deliveryDataRepository.findAll();
-            int i = 0;
-            for (Prediction data : historicalData) {
-                double distance = data.getEstimatedStoreToConsumerDrivingDuration();
-                double deliveryTime = java.time.Duration.between(data.getCreatedAt(), data.getActualDeliveryTime()).toMinutes();
-                simpleRegression.addData(distance, deliveryTime);
-                i++;
-                if (i % 100 == 0) {
-                    System.out.println(i + " records trained");
-                }
-            }
-            // Save the model after training
-            try {
-                saveSimpleModel(simpleRegression, MODEL_FILE_PATH);
-            } catch (IOException ex) {
-                ex.printStackTrace();
-            }
+        registerMeters();
+        if (!backgroundStartup) {
+            loadModels();
         }
+    }
 
-        // Initialize and train the Multiple Linear Regression model
-        multipleLinearRegression = new OLSMultipleLinearRegression();
-        trainMultipleRegressionModel();
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        if (!backgroundStartup) {
+            return;
+        }
+        Thread loader = new Thread(() -> {
+            try {
+                loadModels();
+            } catch (Exception e) {
+                modelLoadError = e.getMessage();
+                logger.severe("Background model load failed: " + e.getMessage());
+            }
+        }, "model-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
 
-        // Initialize and train Polynomial Regression model
-        trainPolynomialRegressionModel();
+    private void loadModels() {
+        // Load the persisted models, training only when there are none; later versions come from ModelRetrainingService
+        long start = System.nanoTime();
+        ModelSnapshot models = modelArtifactStore.load();
+        if (models == null) {
+            models = modelTrainer.train();
+        }
+        modelRegistry.publish(models);
+        logger.info("Models ready in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
     }
 
-    private void trainMultipleRegressionModel() {
-        List<Prediction> historicalData = deliveryDataRepository.findAll();
-        int dataSize = historicalData.size();
-        double[][] xData = new double[dataSize][3]; // Assuming 3 features: Total Items, Subtotal, Estimated Driving Duration
-        double[] yData = new double[dataSize];
+    // Why the background load failed, or null
+    public String getModelLoadError() {
+        return modelLoadError;
+    }
 
-        int i = 0;
-        for (Prediction data : historicalData) {
-            xData[i][0] = data.getTotalItems(); // First feature
-            xData[i][1] = data.getSubtotal();   // Second feature
-            xData[i][2] = data.getEstimatedStoreToConsumerDrivingDuration();  // Third feature (could be another feature if necessary)
-            yData[i] = java.time.Duration.between(data.getCreatedAt(), data.getActualDeliveryTime()).toMinutes(); // Target variable
-            i++;
+    // Current set of compiled models. Callers scoring many rows should grab it once and
+    // score through predict(double[]) with a reused feature vector.
+    public ModelSnapshot getModels() {
+        ModelSnapshot models = modelRegistry.getActive();
+        if (models == null) {
+            throw new ModelsNotReadyException("Models are still loading");
         }
+        return models;
+    }
 
-        multipleLinearRegression.newSampleData(yData, xData);
+    public double predict(ModelType type, double[] features) {
+        return predict(getModels(), type, features);
     }
 
-    private void trainPolynomialRegressionModel() {
-        // Example: Polynomial regression with a quadratic function (degree 2)
-        // You may define a more complex polynomial if needed
-        double[] coefficients = new double[]{0.0, 0.5, 1.5};  // Example quadratic function: y = 0.5x^2 + 1.5x
-        polynomialRegression = new PolynomialFunction(coefficients);  // Quadratic polynomial regression
+    // Score against a snapshot the caller holds on to, e.g. to explain the estimate afterwards
+    public double predict(ModelSnapshot models, ModelType type, double[] features) {
+        long start = System.nanoTime();
+        double prediction;
+        if (predictionCache.isEnabled()) {
+            PredictionCacheKey key = predictionCache.key(type, models.getVersion(), features);
+            Double cached = predictionCache.get(key);
+            if (cached != null) {
+                prediction = cached;
+            } else {
+                prediction = models.get(type).predict(key.getFeatures());
+                predictionCache.put(key, prediction);
+            }
+        } else {
+            prediction = models.get(type).predict(features);
+        }
+        predictionTimers.get(type).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return prediction;
     }
 
     public double predictSimpleDeliveryTime(Prediction newData) {
         // Predict using Simple Regression (based on driving duration)
-        return simpleRegression.predict(newData.getEstimatedStoreToConsumerDrivingDuration());
+        return predictDeliveryTime(getModels(), ModelType.SIMPLE, newData);
     }
 
     public double predictMultipleDeliveryTime(Prediction newData) {
-        // Estimate the regression parameters (coefficients and intercept)
-        double[] regressionParameters = multipleLinearRegression.estimateRegressionParameters();
-        double intercept = regressionParameters[0];  // Intercept is the first element
-        double[] coefficients = new double[regressionParameters.length - 1];
-        System.arraycopy(regressionParameters, 1, coefficients, 0, coefficients.length); // Remaining elements are coefficients
-
-        // Calculate the predicted value using the regression equation:
         // prediction = intercept + (coef1 * totalItems) + (coef2 * subtotal) + (coef3 * estimatedDrivingDuration)
-        double prediction = intercept
-                + coefficients[0] * newData.getTotalItems()
-                + coefficients[1] * newData.getSubtotal()
-                + coefficients[2] * newData.getEstimatedStoreToConsumerDrivingDuration();
-
-        return prediction;
+        return predictDeliveryTime(getModels(), ModelType.MULTIPLE, newData);
     }
 
     public double predictPolynomialDeliveryTime(Prediction newData) {
         // Predict using Polynomial Regression (based on driving duration)
-        return polynomialRegression.value(newData.getEstimatedStoreToConsumerDrivingDuration());
+        return predictDeliveryTime(getModels(), ModelType.POLYNOMIAL, newData);
+    }
+
+    // Estimate for one order from the given snapshot, after filling in its supply counts
+    public double predictDeliveryTime(ModelSnapshot models, ModelType type, Prediction newData) {
+        resolveSupply(newData);
+        return predict(models, type, FeatureSchema.fill(newData, FeatureSchema.newVector()));
+    }
+
+    // Score a whole batch column by column against one model snapshot, fill in the estimated
+    // delivery times and bulk-insert the rows. Estimates are returned in batch order.
+    public double[] predictAndSaveBatch(ModelSnapshot models, ModelType type, List<Prediction> batch) {
+        int rows = batch.size();
+        double[] estimates = new double[rows];
+        for (Prediction data : batch) {
+            resolveSupply(data);
+        }
+        long start = System.nanoTime();
+        models.get(type).predictBatch(FeatureSchema.columns(batch), 0, rows, estimates);
+        batchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+        for (int i = 0; i < rows; i++) {
+            Prediction data = batch.get(i);
+            data.setPredictedDeliveryTime(data.getCreatedAt().plusMinutes((long) estimates[i]));
+        }
+        saveAllPredictions(batch);
+        return estimates;
+    }
+
+    // Contributions and prediction interval of an order's estimate, from the covariance stored with
+    // the model. Pass the snapshot the estimate came from, so a publish in between cannot mix two
+    // model versions in one response; the supply counts must already be resolved.
+    public Map<String, Object> explain(ModelSnapshot models, ModelType type, Prediction data) {
+        double[] features = FeatureSchema.fill(data, FeatureSchema.newVector());
+        if (predictionCache.isEnabled()) {
+            // predict() scored the quantized vector; centre the interval on that same estimate
+            features = predictionCache.key(type, models.getVersion(), features).getFeatures();
+        }
+        return describe(models.explain(type, features));
     }
 
-    public List<Prediction> getAllPredictions() {
-        return deliveryDataRepository.findAll();
+    // explain() for every row of a batch, against the snapshot that scored it
+    public List<Map<String, Object>> explainAll(ModelSnapshot models, ModelType type, List<Prediction> batch) {
+        double[] features = FeatureSchema.newVector();
+        List<Map<String, Object>> explanations = new ArrayList<>(batch.size());
+        for (Prediction data : batch) {
+            explanations.add(describe(models.explain(type, FeatureSchema.fill(data, features))));
+        }
+        return explanations;
+    }
+
+    private Map<String, Object> describe(PredictionExplanation explanation) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("baselineMinutes", explanation.getBaseline());
+        Map<String, Double> contributions = new LinkedHashMap<>();
+        for (int i = 0; i < explanation.getContributions().length; i++) {
+            contributions.merge(FeatureSchema.name(explanation.getFeatureIndexes()[i]),
+                    explanation.getContributions()[i], Double::sum);
+        }
+        result.put("contributions", contributions);
+        double standardError = explanation.getStandardError();
+        if (Double.isFinite(standardError)) {
+            double margin = criticalValue(explanation.getDegreesOfFreedom()) * standardError;
+            Map<String, Object> interval = new HashMap<>();
+            interval.put("confidence", intervalConfidence);
+            interval.put("lowerMinutes", explanation.getPrediction() - margin);
+            interval.put("upperMinutes", explanation.getPrediction() + margin);
+            result.put("standardError", standardError);
+            result.put("interval", interval);
+        }
+        return result;
+    }
+
+    private double criticalValue(long degreesOfFreedom) {
+        return criticalValues.computeIfAbsent(degreesOfFreedom, df ->
+                new TDistribution(null, df).inverseCumulativeProbability(0.5 + intervalConfidence / 2));
+    }
+
+    // Fill in the supply counts a caller did not send from the market's live snapshot when it is
+    // fresh; those were observed, so they are saved with the prediction. Otherwise the counts stay
+    // null: the models fill in their training means when scoring, and porter_data never holds
+    // imputed values that a later training would mistake for observations.
+    public void resolveSupply(Prediction data) {
+        if (data.getTotalOnshiftDashers() != null && data.getTotalBusyDashers() != null
+                && data.getTotalOutstandingOrders() != null) {
+            return;
+        }
+        long state = supplySnapshotService.get(FeatureSchema.marketId(data.getMarketId()));
+        if (state == SupplySnapshotService.MISSING) {
+            return;
+        }
+        if (data.getTotalOnshiftDashers() == null) {
+            data.setTotalOnshiftDashers(SupplySnapshotService.onshiftDashers(state));
+        }
+        if (data.getTotalBusyDashers() == null) {
+            data.setTotalBusyDashers(SupplySnapshotService.busyDashers(state));
+        }
+        if (data.getTotalOutstandingOrders() == null) {
+            data.setTotalOutstandingOrders(SupplySnapshotService.outstandingOrders(state));
+        }
     }
 
     public void savePrediction(Prediction data) {
-        deliveryDataRepository.save(data);
+        long start = System.nanoTime();
+        if (writeBehindQueue.isEnabled()) {
+            writeBehindQueue.enqueue(data);
+        } else {
+            databaseLimiter.run(() -> deliveryDataRepository.save(data));
+        }
+        saveTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        analyticsAggregateStore.record(data);
+        deliveryTimeSeriesService.record(data);
     }
 
-    private void saveSimpleModel(SimpleRegression regression, String filePath) throws IOException {
-        // Serialize and save the model to a file
-        try (FileOutputStream fileOut = new FileOutputStream(filePath);
-             ObjectOutputStream out = new ObjectOutputStream(fileOut)) {
-            out.writeObject(regression);
+    public void saveAllPredictions(List<Prediction> batch) {
+        long start = System.nanoTime();
+        if (writeBehindQueue.isEnabled()) {
+            writeBehindQueue.enqueueAll(batch);
+        } else {
+            databaseLimiter.run(() -> predictionBatchWriter.insertAll(batch));
+        }
+        batchSaveTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        for (Prediction data : batch) {
+            analyticsAggregateStore.record(data);
+            deliveryTimeSeriesService.record(data);
         }
     }
 
-    private SimpleRegression loadSimpleModel(String filePath) throws IOException, ClassNotFoundException {
-        // Load the serialized model from a file
-        try (FileInputStream fileIn = new FileInputStream(filePath);
-             ObjectInputStream in = new ObjectInputStream(fileIn)) {
-            return (SimpleRegression) in.readObject();
+    private void registerMeters() {
+        // Histogram buckets let Prometheus compute per-model latency quantiles across instances
+        for (ModelType type : ModelType.values()) {
+            predictionTimers.put(type, Timer.builder("prediction.latency")
+                    .description("Time to score one order")
+                    .tag("model", type.name().toLowerCase())
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
         }
+        batchTimer = Timer.builder("prediction.batch.latency")
+                .description("Time to score one batch of orders")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        // With write-behind enabled this is the enqueue time; the queue reports its own flush time
+        saveTimer = Timer.builder("prediction.save")
+                .description("Time to persist predictions")
+                .tag("operation", "single")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        batchSaveTimer = Timer.builder("prediction.save")
+                .description("Time to persist predictions")
+                .tag("operation", "batch")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
     }
 }
@@ -0,0 +1,227 @@
+package com.delivery.prediction.service;
+
+import com.delivery.prediction.model.Prediction;
+import com.delivery.prediction.repository.PredictionBatchWriter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+// Optional write-behind persistence for predictions.
+// Handlers hand their rows to a bounded in-memory queue and return immediately; a single
+// background writer drains the queue in JDBC batches. Disabled by default, in which case
+// PredictionService keeps writing synchronously.
+@Service
+public class PredictionWriteBehindQueue {
+
+    private static final Logger logger = Logger.getLogger(PredictionWriteBehindQueue.class.getName());
+
+    // What to do with a record when the queue is full
+    public enum OverflowPolicy {
+        BLOCK,        // wait for space (backpressure onto the request thread)
+        DROP,         // shed the record and count it
+        CALLER_RUNS   // write it synchronously on the request thread
+    }
+
+    @Value("${persistence.write-behind.enabled:false}")
+    private boolean enabled;
+
+    @Value("${persistence.write-behind.capacity:10000}")
+    private int capacity;
+
+    @Value("${persistence.write-behind.flush-size:500}")
+    private int flushSize;
+
+    @Value("${persistence.write-behind.flush-interval-ms:200}")
+    private long flushIntervalMs;
+
+    @Value("${persistence.write-behind.overflow-policy:BLOCK}")
+    private OverflowPolicy overflowPolicy;
+
+    @Value("${persistence.write-behind.shutdown-timeout-ms:10000}")
+    private long shutdownTimeoutMs;
+
+    @Autowired
+    private PredictionBatchWriter predictionBatchWriter;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private DatabaseConcurrencyLimiter databaseLimiter;
+
+    private BlockingQueue<Prediction> queue;
+    private Thread writer;
+    private volatile boolean running;
+
+    private Counter writtenCounter;
+    private Counter droppedCounter;
+    private Counter failedCounter;
+    private Timer flushTimer;
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+
+        queue = new ArrayBlockingQueue<>(capacity);
+        Gauge.builder("prediction.writebehind.queue.depth", queue, BlockingQueue::size)
+                .description("Predictions waiting to be written")
+                .register(meterRegistry);
+        writtenCounter = meterRegistry.counter("prediction.writebehind.written");
+        droppedCounter = meterRegistry.counter("prediction.writebehind.dropped");
+        failedCounter = meterRegistry.counter("prediction.writebehind.failed");
+        flushTimer = Timer.builder("prediction.writebehind.flush")
+                .description("Time to write one batch of predictions")
+                .register(meterRegistry);
+
+        running = true;
+        writer = new Thread(this::drainLoop, "prediction-write-behind");
+        writer.start();
+        logger.info("Write-behind persistence enabled (capacity " + capacity + ", flush size " + flushSize
+                + ", flush interval " + flushIntervalMs + " ms, overflow policy " + overflowPolicy + ")");
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void enqueue(Prediction data) {
+        if (!running) {
+            // Shutting down: the writer may already be gone, so write through
+            writeThrough(data);
+            return;
+        }
+
+        if (queue.offer(data)) {
+            keepIfStranded(data);
+            return;
+        }
+
+        switch (overflowPolicy) {
+            case BLOCK:
+                try {
+                    // Timed, so a writer that exits while we wait cannot leave us blocked forever
+                    while (!queue.offer(data, flushIntervalMs, TimeUnit.MILLISECONDS)) {
+                        if (!running) {
+                            writeThrough(data);
+                            return;
+                        }
+                    }
+                    keepIfStranded(data);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    droppedCounter.increment();
+                }
+                break;
+            case CALLER_RUNS:
+                writeThrough(data);
+                break;
+            case DROP:
+            default:
+                droppedCounter.increment();
+                break;
+        }
+    }
+
+    // shutdown() may have run between the running check and the offer, and the writer may have
+    // found the queue empty and exited; take the record back and write it here in that case. If
+    // the writer got to it first, remove() fails and the record is written (or being written) there.
+    private void keepIfStranded(Prediction data) {
+        if (!running && queue.remove(data)) {
+            writeThrough(data);
+        }
+    }
+
+    private void writeThrough(Prediction data) {
+        databaseLimiter.run(() -> predictionBatchWriter.insertAll(List.of(data)));
+        writtenCounter.increment();
+    }
+
+    public void enqueueAll(List<Prediction> batch) {
+        for (Prediction data : batch) {
+            enqueue(data);
+        }
+    }
+
+    private void drainLoop() {
+        List<Prediction> batch = new ArrayList<>(flushSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                collectBatch(batch);
+            } catch (InterruptedException e) {
+                // Keep draining; shutdown is signalled through the running flag
+                Thread.interrupted();
+            }
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    // Wait for the first record, then keep collecting until the batch is full or the
+    // flush interval since that first record has elapsed
+    private void collectBatch(List<Prediction> batch) throws InterruptedException {
+        Prediction first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return;
+        }
+        batch.add(first);
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        while (batch.size() < flushSize) {
+            queue.drainTo(batch, flushSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= flushSize || remaining <= 0) {
+                break;
+            }
+            Prediction next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void flush(List<Prediction> batch) {
+        try {
+            flushTimer.record(() -> databaseLimiter.run(() -> predictionBatchWriter.insertAll(batch)));
+            writtenCounter.increment(batch.size());
+        } catch (Exception e) {
+            logger.severe("Failed to write " + batch.size() + " predictions: " + e.getMessage());
+            failedCounter.increment(batch.size());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (!running) {
+            return;
+        }
+        // Stop accepting into the queue and let the writer drain what is left
+        running = false;
+        try {
+            writer.join(shutdownTimeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writer.isAlive()) {
+            logger.warning("Write-behind queue not drained within " + shutdownTimeoutMs + " ms, "
+                    + queue.size() + " predictions left unwritten");
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.delivery.prediction.service;
+
+import com.delivery.prediction.analytics.DeliveryTimeAggregate;
+import com.delivery.prediction.analytics.ReservoirSampler;
+import com.delivery.prediction.analytics.StratifiedSample;
+import com.delivery.prediction.regression.FeatureSchema;
+import com.delivery.prediction.regression.ModelSnapshot;
+import com.delivery.prediction.repository.TrainingDataRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+// Draws per-market (stratified) samples of porter_data for the analytics endpoints.
+// Only the sampled rows are kept and scored; RANGE additionally reads only the rows it keeps.
+@Service
+public class SamplingService {
+
+    public enum Method {
+        RESERVOIR,  // uniform reservoir per market over one pass of the feature store (or a cursor)
+        // Blocks of consecutive ids starting at random keys, read through the market_id index. This is a
+        // cluster sample, but its intervals are computed as for a simple random sample: they are too
+        // narrow when neighbouring rows are alike, and responses flag them as approximate.
+        RANGE
+    }
+
+    // Sampled rows hold the feature vector followed by the actual delivery minutes
+    private static final int ACTUAL_MINUTES = FeatureSchema.SIZE;
+    private static final int ROW_WIDTH = FeatureSchema.SIZE + 1;
+
+    @Autowired
+    private TrainingDataRepository trainingDataRepository;
+
+    @Autowired
+    private FeatureStore featureStore;
+
+    @Autowired
+    private AnalyticsMetrics analyticsMetrics;
+
+    @Value("${analytics.sampling.block-size:50}")
+    private int blockSize;
+
+    public StratifiedSample sampleByMarket(int perMarket, Method method, ModelSnapshot models) {
+        SplittableRandom random = new SplittableRandom();
+        Map<Integer, ReservoirSampler> reservoirs = new HashMap<>();
+        Map<Integer, Long> populations = new HashMap<>();
+        String engine = "sampling-" + method.name().toLowerCase();
+
+        long start = System.nanoTime();
+        if (method == Method.RANGE) {
+            sampleKeyRanges(perMarket, random, reservoirs, populations);
+        } else {
+            featureStore.forEachRow((marketId, features, deliveryMinutes) -> {
+                ReservoirSampler reservoir = reservoirs.computeIfAbsent(marketId,
+                        id -> new ReservoirSampler(perMarket, ROW_WIDTH, random.split()));
+                offer(reservoir, features, deliveryMinutes);
+            });
+            reservoirs.forEach((marketId, reservoir) -> populations.put(marketId, reservoir.getSeen()));
+        }
+
+        analyticsMetrics.recordPhase(engine, AnalyticsMetrics.FETCH, start);
+
+        // Score only the rows that made it into the sample
+        start = System.nanoTime();
+        long rows = 0;
+        Map<Integer, DeliveryTimeAggregate> samples = new HashMap<>();
+        for (Map.Entry<Integer, ReservoirSampler> entry : reservoirs.entrySet()) {
+            ReservoirSampler reservoir = entry.getValue();
+            DeliveryTimeAggregate sample = new DeliveryTimeAggregate();
+            for (int i = 0; i < reservoir.size(); i++) {
+                double[] row = reservoir.slot(i);
+                sample.add(row[ACTUAL_MINUTES], models.getSimple().predict(row),
+                        models.getMultiple().predict(row), models.getPolynomial().predict(row));
+            }
+            samples.put(entry.getKey(), sample);
+            rows += reservoir.size();
+        }
+        analyticsMetrics.recordPhase(engine, AnalyticsMetrics.COMPUTE, start);
+        analyticsMetrics.recordRows(engine, rows);
+        return new StratifiedSample(samples, populations, method == Method.RANGE);
+    }
+
+    // Read ceil(n / blockSize) blocks per market starting at uniformly random ids. Blocks are
+    // visited in key order and never overlap; the reservoir keeps a uniform subset of what was read.
+    // Rows without a market_id cannot be reached through the index and are left out.
+    private void sampleKeyRanges(int perMarket, SplittableRandom random, Map<Integer, ReservoirSampler> reservoirs,
+                                 Map<Integer, Long> populations) {
+        for (Map.Entry<Integer, long[]> entry : trainingDataRepository.findMarketKeyRanges().entrySet()) {
+            int marketId = entry.getKey();
+            long count = entry.getValue()[0];
+            long minId = entry.getValue()[1];
+            long maxId = entry.getValue()[2];
+            populations.put(marketId, count);
+
+            int target = (int) Math.min(perMarket, count);
+            ReservoirSampler reservoir = new ReservoirSampler(Math.max(target, 1), ROW_WIDTH, random.split());
+            reservoirs.put(marketId, reservoir);
+
+            long[] starts = new long[(target + blockSize - 1) / blockSize];
+            for (int i = 0; i < starts.length; i++) {
+                starts[i] = minId + random.nextLong(maxId - minId + 1);
+            }
+            Arrays.sort(starts);
+
+            long lastId = minId - 1;
+            for (long start : starts) {
+                long read = trainingDataRepository.streamMarketBlock(marketId, Math.max(start, lastId + 1), blockSize,
+                        (market, features, deliveryMinutes) -> offer(reservoir, features, deliveryMinutes));
+                if (read < 0) {
+                    break;
+                }
+                lastId = read;
+            }
+        }
+    }
+
+    private static void offer(ReservoirSampler reservoir, double[] features, double deliveryMinutes) {
+        int slot = reservoir.nextSlot();
+        if (slot >= 0) {
+            double[] row = reservoir.slot(slot);
+            System.arraycopy(features, 0, row, 0, FeatureSchema.SIZE);
+            row[ACTUAL_MINUTES] = deliveryMinutes;
+        }
+    }
+}
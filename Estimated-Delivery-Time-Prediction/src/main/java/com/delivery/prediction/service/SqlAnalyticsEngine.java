@@ -0,0 +1,71 @@
+package com.delivery.prediction.service;
+
+import com.delivery.prediction.analytics.DeliveryTimeAggregate;
+import com.delivery.prediction.analytics.MarketAggregates;
+import com.delivery.prediction.regression.ModelSnapshot;
+import com.delivery.prediction.regression.ModelType;
+import com.delivery.prediction.regression.RegressionModel;
+import com.delivery.prediction.repository.AnalyticsQueryRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+// Analytics engine that pushes the per-market aggregation down into the database.
+// Models that cannot be rendered as SQL are evaluated on a pass over the feature store instead.
+@Service
+public class SqlAnalyticsEngine {
+
+    private static final Logger logger = Logger.getLogger(SqlAnalyticsEngine.class.getName());
+
+    @Autowired
+    private AnalyticsQueryRepository analyticsQueryRepository;
+
+    @Autowired
+    private FeatureStore featureStore;
+
+    @Autowired
+    private AnalyticsMetrics analyticsMetrics;
+
+    public MarketAggregates aggregate(ModelSnapshot models) {
+        Map<ModelType, String> pushedDown = new EnumMap<>(ModelType.class);
+        List<ModelType> streamed = new ArrayList<>();
+        for (ModelType type : ModelType.values()) {
+            String expression = AnalyticsQueryRepository.toSqlExpression(models.get(type));
+            if (expression != null) {
+                pushedDown.put(type, expression);
+            } else {
+                streamed.add(type);
+            }
+        }
+
+        long start = System.nanoTime();
+        Map<Integer, DeliveryTimeAggregate> markets = analyticsQueryRepository.aggregateByMarket(pushedDown);
+        analyticsMetrics.recordPhase("sql", AnalyticsMetrics.FETCH, start);
+        // Only one row per market comes back from the database
+        long rows = markets.size();
+
+        if (!streamed.isEmpty()) {
+            logger.info("Scanning rows to evaluate models without a SQL form: " + streamed);
+            RegressionModel[] streamedModels = new RegressionModel[streamed.size()];
+            for (int i = 0; i < streamedModels.length; i++) {
+                streamedModels[i] = models.get(streamed.get(i));
+            }
+            start = System.nanoTime();
+            rows += featureStore.forEachRow((marketId, features, deliveryMinutes) -> {
+                DeliveryTimeAggregate market = markets.computeIfAbsent(marketId, id -> new DeliveryTimeAggregate());
+                for (int i = 0; i < streamedModels.length; i++) {
+                    market.addPredicted(streamed.get(i), streamedModels[i].predict(features));
+                }
+            });
+            analyticsMetrics.recordPhase("sql", AnalyticsMetrics.COMPUTE, start);
+        }
+
+        analyticsMetrics.recordRows("sql", rows);
+        return MarketAggregates.fromMarkets(markets);
+    }
+}
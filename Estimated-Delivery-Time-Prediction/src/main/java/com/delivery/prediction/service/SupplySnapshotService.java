@@ -0,0 +1,169 @@
+package com.delivery.prediction.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Live supply and demand per market: on-shift dashers, busy dashers and outstanding orders.
+//
+// Each market's three counts are packed into one long of an AtomicLongArray indexed by market id,
+// so an update is a single CAS and a reader always sees the three counts of the same update,
+// without locks or allocation. Snapshots older than supply.max-age-ms are treated as missing.
+@Service
+public class SupplySnapshotService {
+
+    // Returned by get() for a market without a fresh snapshot
+    public static final long MISSING = -1L;
+
+    // 21 bits per count, the top bit stays clear so a state is never MISSING
+    private static final int BITS = 21;
+    private static final long MASK = (1L << BITS) - 1;
+    public static final int MAX_COUNT = (int) MASK;
+
+    private static final int ONSHIFT_SHIFT = 0;
+    private static final int BUSY_SHIFT = BITS;
+    private static final int OUTSTANDING_SHIFT = 2 * BITS;
+
+    // Markets 0..max-market-id are tracked
+    @Value("${supply.max-market-id:1023}")
+    private int maxMarketId;
+
+    @Value("${supply.max-age-ms:300000}")
+    private long maxAgeMillis;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private AtomicLongArray states;
+    // Wall-clock millis of each market's last update, 0 when never updated. Written after the
+    // state, so a concurrent reader may briefly pair a new state with the previous timestamp.
+    private AtomicLongArray updatedAt;
+
+    private Counter updates;
+
+    @PostConstruct
+    public void start() {
+        states = new AtomicLongArray(maxMarketId + 1);
+        updatedAt = new AtomicLongArray(maxMarketId + 1);
+        updates = Counter.builder("supply.updates")
+                .description("Supply snapshot updates applied")
+                .register(meterRegistry);
+        Gauge.builder("supply.markets.fresh", this, service -> service.snapshot().size())
+                .description("Markets with a fresh supply snapshot")
+                .register(meterRegistry);
+    }
+
+    public boolean isTracked(int marketId) {
+        return marketId >= 0 && marketId <= maxMarketId;
+    }
+
+    // Set the market's counts and return the state installed. A null count keeps its current
+    // value, which needs a fresh snapshot: without one nothing is changed and MISSING is returned,
+    // rather than publishing zeros or expired counts as live.
+    public long set(int marketId, Integer onshiftDashers, Integer busyDashers, Integer outstandingOrders) {
+        checkMarket(marketId);
+        boolean partial = onshiftDashers == null || busyDashers == null || outstandingOrders == null;
+        if (partial && get(marketId) == MISSING) {
+            return MISSING;
+        }
+        long state;
+        long next;
+        do {
+            state = states.get(marketId);
+            next = pack(onshiftDashers != null ? onshiftDashers : onshiftDashers(state),
+                    busyDashers != null ? busyDashers : busyDashers(state),
+                    outstandingOrders != null ? outstandingOrders : outstandingOrders(state));
+        } while (!states.compareAndSet(marketId, state, next));
+        touch(marketId);
+        return next;
+    }
+
+    // Add deltas to the market's counts (an order placed, a dasher going off shift, ...) and return
+    // the state installed; counts are clamped to [0, MAX_COUNT]. Deltas only apply to a fresh
+    // snapshot, otherwise nothing is changed and MISSING is returned.
+    public long adjust(int marketId, int onshiftDelta, int busyDelta, int outstandingDelta) {
+        checkMarket(marketId);
+        if (get(marketId) == MISSING) {
+            return MISSING;
+        }
+        long state;
+        long next;
+        do {
+            state = states.get(marketId);
+            next = pack(onshiftDashers(state) + onshiftDelta, busyDashers(state) + busyDelta,
+                    outstandingOrders(state) + outstandingDelta);
+        } while (!states.compareAndSet(marketId, state, next));
+        touch(marketId);
+        return next;
+    }
+
+    // Packed counts of the market, or MISSING when it has no snapshot younger than max-age-ms
+    public long get(int marketId) {
+        if (!isTracked(marketId)) {
+            return MISSING;
+        }
+        long state = states.get(marketId);
+        long updated = updatedAt.get(marketId);
+        if (updated == 0 || System.currentTimeMillis() - updated > maxAgeMillis) {
+            return MISSING;
+        }
+        return state;
+    }
+
+    public static int onshiftDashers(long state) {
+        return (int) ((state >>> ONSHIFT_SHIFT) & MASK);
+    }
+
+    public static int busyDashers(long state) {
+        return (int) ((state >>> BUSY_SHIFT) & MASK);
+    }
+
+    public static int outstandingOrders(long state) {
+        return (int) ((state >>> OUTSTANDING_SHIFT) & MASK);
+    }
+
+    // Fresh snapshots by market id, for the supply endpoint
+    public Map<Integer, Map<String, Object>> snapshot() {
+        Map<Integer, Map<String, Object>> markets = new LinkedHashMap<>();
+        for (int marketId = 0; marketId <= maxMarketId; marketId++) {
+            long state = get(marketId);
+            if (state != MISSING) {
+                Map<String, Object> market = new LinkedHashMap<>();
+                market.put("totalOnshiftDashers", onshiftDashers(state));
+                market.put("totalBusyDashers", busyDashers(state));
+                market.put("totalOutstandingOrders", outstandingOrders(state));
+                market.put("updatedAt", updatedAt.get(marketId));
+                markets.put(marketId, market);
+            }
+        }
+        return markets;
+    }
+
+    private void touch(int marketId) {
+        updatedAt.set(marketId, System.currentTimeMillis());
+        updates.increment();
+    }
+
+    private void checkMarket(int marketId) {
+        if (!isTracked(marketId)) {
+            throw new IllegalArgumentException("Market id must be between 0 and " + maxMarketId);
+        }
+    }
+
+    static long pack(long onshiftDashers, long busyDashers, long outstandingOrders) {
+        return clamp(onshiftDashers) << ONSHIFT_SHIFT | clamp(busyDashers) << BUSY_SHIFT
+                | clamp(outstandingOrders) << OUTSTANDING_SHIFT;
+    }
+
+    private static long clamp(long count) {
+        return Math.max(0, Math.min(MASK, count));
+    }
+}
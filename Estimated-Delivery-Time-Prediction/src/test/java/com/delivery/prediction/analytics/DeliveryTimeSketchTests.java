@@ -0,0 +1,60 @@
+package com.delivery.prediction.analytics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class DeliveryTimeSketchTests {
+
+	@Test
+	void quantilesStayWithinOneBucket() {
+		DeliveryTimeSketch sketch = new DeliveryTimeSketch();
+		for (int i = 1; i <= 2000; i++) {
+			sketch.add(i * 0.1);
+		}
+
+		assertEquals(2000, sketch.getCount());
+		assertEquals(100.05, sketch.mean(), 1e-9);
+		// Above 32 minutes buckets are 1/16 of their value wide
+		assertEquals(100, sketch.quantile(0.5), 100 / 16.0);
+		assertEquals(180, sketch.quantile(0.9), 180 / 16.0);
+		assertEquals(10, sketch.quantile(0.05), 1);
+	}
+
+	@Test
+	void mergedSketchesMatchOneSketch() {
+		DeliveryTimeSketch whole = new DeliveryTimeSketch();
+		DeliveryTimeSketch left = new DeliveryTimeSketch();
+		DeliveryTimeSketch right = new DeliveryTimeSketch();
+		for (int i = 0; i < 1000; i++) {
+			double minutes = 15 + (i * 37 % 90);
+			whole.add(minutes);
+			(i % 3 == 0 ? left : right).add(minutes);
+		}
+		left.merge(right);
+
+		assertEquals(whole.getCount(), left.getCount());
+		assertEquals(whole.mean(), left.mean(), 1e-9);
+		assertEquals(whole.quantile(0.99), left.quantile(0.99), 1e-9);
+	}
+
+	@Test
+	void ringDropsMinutesThatLeftTheWindow() {
+		MarketTimeSeries series = new MarketTimeSeries(60);
+		long now = 1_000_000;
+		series.add(now - 90, 10, 40, now);
+		series.add(now - 30, 10, 20, now);
+		series.add(now, 11, 30, now);
+		// A minute one full window later reuses the slot of now - 30
+		series.add(now + 30, 11, 50, now + 30);
+
+		DeliveryTimeSketch[] buckets = {new DeliveryTimeSketch(), new DeliveryTimeSketch()};
+		series.window(now + 30, 60, 30, buckets);
+		assertEquals(1, buckets[0].getCount());
+		assertEquals(30, buckets[0].mean(), 1e-9);
+		assertEquals(1, buckets[1].getCount());
+		assertEquals(50, buckets[1].mean(), 1e-9);
+		// Hour-of-day buckets keep everything
+		assertEquals(2, series.hourOfDay(10).getCount());
+	}
+}
@@ -0,0 +1,41 @@
+package com.delivery.prediction.analytics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ErrorMetricsTests {
+
+	@Test
+	void metricsMatchDirectComputation() {
+		ErrorMetrics metrics = new ErrorMetrics();
+		metrics.add(40, 30);
+		metrics.add(20, 25);
+		metrics.add(50, 50);
+		metrics.add(10, 12);
+
+		assertEquals((10 + 5 + 0 + 2) / 4.0, metrics.meanAbsoluteError(), 1e-9);
+		assertEquals(Math.sqrt((100 + 25 + 0 + 4) / 4.0), metrics.rootMeanSquaredError(), 1e-9);
+		assertEquals(100 * (10 / 40.0 + 5 / 20.0 + 0 + 2 / 10.0) / 4, metrics.meanAbsolutePercentageError(), 1e-9);
+		assertEquals((-10 + 5 + 0 + 2) / 4.0, metrics.bias(), 1e-9);
+	}
+
+	@Test
+	void mergedPartitionsGiveTheSameQuantiles() {
+		ErrorMetrics whole = new ErrorMetrics();
+		ErrorMetrics left = new ErrorMetrics();
+		ErrorMetrics right = new ErrorMetrics();
+		for (int i = 0; i < 1000; i++) {
+			double predicted = 30 + (i % 100) * 0.1;
+			whole.add(30, predicted);
+			(i % 2 == 0 ? left : right).add(30, predicted);
+		}
+		left.merge(right);
+
+		assertEquals(whole.absoluteErrorQuantile(0.9), left.absoluteErrorQuantile(0.9), 1e-9);
+		assertEquals(whole.meanAbsoluteError(), left.meanAbsoluteError(), 1e-9);
+		// Errors are spread evenly over [0, 9.9] minutes; the histogram is accurate to a bucket
+		assertEquals(4.95, whole.absoluteErrorQuantile(0.5), 0.5);
+	}
+
+}
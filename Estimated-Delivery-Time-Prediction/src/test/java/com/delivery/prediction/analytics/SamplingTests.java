@@ -0,0 +1,70 @@
+package com.delivery.prediction.analytics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SamplingTests {
+
+	@Test
+	void reservoirKeepsAtMostCapacityRows() {
+		ReservoirSampler reservoir = new ReservoirSampler(10, 1, new SplittableRandom(42));
+		for (int i = 0; i < 1000; i++) {
+			int slot = reservoir.nextSlot();
+			if (slot >= 0) {
+				reservoir.slot(slot)[0] = i;
+			}
+		}
+
+		assertEquals(10, reservoir.size());
+		assertEquals(1000, reservoir.getSeen());
+	}
+
+	@Test
+	void fullPopulationSampleHasNoSamplingError() {
+		// 1..4: mean 2.5
+		SampleEstimate estimate = SampleEstimate.fromSums(4, 10, 30, 4);
+
+		assertEquals(2.5, estimate.getMean(), 1e-9);
+		assertEquals(0.0, estimate.getStandardError(), 1e-9);
+	}
+
+	@Test
+	void partialSampleIntervalContainsMean() {
+		SampleEstimate estimate = SampleEstimate.fromSums(4, 10, 30, 1000);
+
+		assertTrue(estimate.getStandardError() > 0);
+		assertTrue(estimate.getLower() < 2.5 && estimate.getUpper() > 2.5);
+	}
+
+	@Test
+	void overallEstimateWeightsOnlySampledMarkets() {
+		Map<Integer, DeliveryTimeAggregate> samples = new HashMap<>();
+		Map<Integer, Long> populations = new HashMap<>();
+		samples.put(1, sample(10, 20));
+		populations.put(1, 100L);
+		samples.put(2, sample(40));
+		populations.put(2, 300L);
+		// A market whose sampled blocks held no trainable rows
+		samples.put(3, new DeliveryTimeAggregate());
+		populations.put(3, 600L);
+
+		SampleEstimate overall = new StratifiedSample(samples, populations, false).overallActual();
+
+		assertEquals(0.25 * 15 + 0.75 * 40, overall.getMean(), 1e-9);
+	}
+
+	private static DeliveryTimeAggregate sample(double... actualMinutes) {
+		DeliveryTimeAggregate sample = new DeliveryTimeAggregate();
+		for (double minutes : actualMinutes) {
+			sample.add(minutes, minutes, minutes, minutes);
+		}
+		return sample;
+	}
+
+}
@@ -0,0 +1,41 @@
+package com.delivery.prediction.features;
+
+import com.delivery.prediction.regression.FeatureSchema;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class FeatureTableTests {
+
+	@Test
+	void appendingKeepsEarlierSnapshotsUnchanged() {
+		FeatureTable.Appender appender = FeatureTable.empty().appender();
+		for (int id = 1; id <= 3; id++) {
+			appender.add(id, 1, row(id), id * 10);
+		}
+		FeatureTable first = appender.build();
+
+		FeatureTable.Appender next = first.appender();
+		for (int id = 4; id <= 5000; id++) {
+			next.add(id, 2, row(id), id * 10);
+		}
+		FeatureTable second = next.build();
+
+		assertEquals(3, first.getRows());
+		assertEquals(3, first.getMaxId());
+		assertEquals(5000, second.getRows());
+		assertEquals(5000, second.getMaxId());
+		assertEquals(30.0, second.getDeliveryMinutes()[2]);
+		assertEquals(3.0, second.getColumns()[FeatureSchema.TOTAL_ITEMS][2]);
+		assertEquals(3, first.forEachRow((marketId, features, minutes) -> assertEquals(1, marketId)));
+	}
+
+	private static double[] row(int id) {
+		double[] features = FeatureSchema.newVector();
+		features[FeatureSchema.TOTAL_ITEMS] = id;
+		features[FeatureSchema.SUBTOTAL] = id * 2.0;
+		features[FeatureSchema.DRIVING_DURATION] = id * 60.0;
+		return features;
+	}
+
+}
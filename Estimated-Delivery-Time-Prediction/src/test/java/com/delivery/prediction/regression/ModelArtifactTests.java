@@ -0,0 +1,112 @@
+package com.delivery.prediction.regression;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ModelArtifactTests {
+
+	private static ModelSnapshot snapshot() {
+		return new ModelSnapshot(7, LocalDateTime.of(2025, 4, 21, 10, 30, 15, 123456789), 1234,
+				new LinearModel(12.5, new int[]{FeatureSchema.DRIVING_DURATION}, new double[]{0.04}),
+				LinearModel.fromParameters(new double[]{10.0, 2.0, 0.5, 0.01}, null, new double[]{3.0, 45.5, 620.0},
+						FeatureSchema.TOTAL_ITEMS, FeatureSchema.SUBTOTAL, FeatureSchema.DRIVING_DURATION),
+				new PolynomialModel(FeatureSchema.DRIVING_DURATION, new double[]{0.0, 1.5, 0.5}),
+				new double[]{3.0, 45.5, 620.0, 2.0, 0.0, 40.0, 35.0, 50.0});
+	}
+
+	private static byte[] write(ModelSnapshot snapshot) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ModelArtifact.write(snapshot, out);
+		return out.toByteArray();
+	}
+
+	@Test
+	void roundTripKeepsCoefficientsAndMetadata() throws IOException {
+		ModelSnapshot original = snapshot();
+		ModelSnapshot loaded = ModelArtifact.read(new ByteArrayInputStream(write(original)));
+
+		assertEquals(original.getTrainedAt(), loaded.getTrainedAt());
+		assertEquals(original.getTrainingRows(), loaded.getTrainingRows());
+		assertEquals(50.0, loaded.getFeatureMean(FeatureSchema.OUTSTANDING_ORDERS));
+		LinearModel multiple = (LinearModel) loaded.getMultiple();
+		assertEquals(10.0, multiple.getIntercept());
+		assertArrayEquals(new double[]{2.0, 0.5, 0.01}, multiple.getCoefficients());
+		assertArrayEquals(((LinearModel) original.getMultiple()).getFeatureIndexes(), multiple.getFeatureIndexes());
+		assertArrayEquals(new double[]{3.0, 45.5, 620.0}, multiple.getFillValues());
+		assertArrayEquals(new double[]{0.0, 1.5, 0.5}, ((PolynomialModel) loaded.getPolynomial()).getCoefficients());
+
+		double[] features = FeatureSchema.newVector();
+		features[FeatureSchema.DRIVING_DURATION] = 600;
+		for (ModelType type : ModelType.values()) {
+			assertEquals(original.get(type).predict(features), loaded.get(type).predict(features));
+		}
+	}
+
+	@Test
+	void segmentedModelsRoundTrip() throws IOException {
+		ModelSnapshot global = snapshot();
+		SegmentedModel segmented = new SegmentedModel(global.getMultiple(),
+				new long[]{SegmentedModel.key(1, SegmentedModel.ANY_CATEGORY), SegmentedModel.key(2, 42)},
+				new RegressionModel[]{new LinearModel(30.0, new int[0], new double[0]),
+						new LinearModel(40.0, new int[]{FeatureSchema.TOTAL_ITEMS}, new double[]{1.0})});
+		ModelSnapshot original = new ModelSnapshot(1, global.getTrainedAt(), global.getTrainingRows(),
+				global.getSimple(), segmented, global.getPolynomial(), new double[FeatureSchema.SIZE]);
+		ModelSnapshot loaded = ModelArtifact.read(new ByteArrayInputStream(write(original)));
+
+		double[] features = FeatureSchema.newVector();
+		features[FeatureSchema.TOTAL_ITEMS] = 3;
+		features[FeatureSchema.DRIVING_DURATION] = 600;
+		for (int marketId = 0; marketId <= 2; marketId++) {
+			features[FeatureSchema.MARKET_ID] = marketId;
+			features[FeatureSchema.STORE_CATEGORY] = 42;
+			assertEquals(original.getMultiple().predict(features), loaded.getMultiple().predict(features));
+		}
+		assertEquals(2, ((SegmentedModel) loaded.getMultiple()).getSegments());
+	}
+
+	@Test
+	void covarianceRoundTrips() throws IOException {
+		ParameterCovariance covariance = ParameterCovariance.fromMatrix(
+				new double[][]{{4.0, -0.5}, {-0.5, 0.25}}, 9.0, 100);
+		ModelSnapshot original = new ModelSnapshot(1, LocalDateTime.of(2025, 4, 21, 10, 30), 102,
+				LinearModel.fromParameters(new double[]{10.0, 2.0}, covariance, FeatureSchema.DRIVING_DURATION),
+				LinearModel.fromParameters(new double[]{10.0, 2.0, 0.5, 0.01},
+						FeatureSchema.TOTAL_ITEMS, FeatureSchema.SUBTOTAL, FeatureSchema.DRIVING_DURATION),
+				new PolynomialModel(FeatureSchema.DRIVING_DURATION, 0.0, 1.0, new double[]{0.0, 1.5},
+						ParameterCovariance.fromMatrix(new double[][]{{1.0, 0.0}, {0.0, 2.0}}, 4.0, 100)),
+				new double[]{3.0, 45.5, 620.0, 2.0, 0.0, 40.0, 35.0, 50.0});
+		ModelSnapshot loaded = ModelArtifact.read(new ByteArrayInputStream(write(original)));
+
+		ParameterCovariance simple = ((LinearModel) loaded.getSimple()).getCovariance();
+		assertEquals(-0.5, simple.get(0, 1));
+		assertEquals(-0.5, simple.get(1, 0));
+		assertEquals(9.0, simple.getResidualVariance());
+		assertEquals(100, simple.getDegreesOfFreedom());
+		assertNull(((LinearModel) loaded.getMultiple()).getCovariance());
+
+		double[] features = FeatureSchema.newVector();
+		features[FeatureSchema.DRIVING_DURATION] = 3;
+		for (ModelType type : ModelType.values()) {
+			assertEquals(original.explain(type, features).getStandardError(),
+					loaded.explain(type, features).getStandardError());
+		}
+	}
+
+	@Test
+	void corruptedArtifactIsRejected() throws IOException {
+		byte[] bytes = write(snapshot());
+		bytes[bytes.length / 2] ^= 0x01;
+
+		assertThrows(IOException.class, () -> ModelArtifact.read(new ByteArrayInputStream(bytes)));
+	}
+
+}
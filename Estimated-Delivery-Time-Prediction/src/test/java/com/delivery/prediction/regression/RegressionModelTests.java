@@ -0,0 +1,167 @@
+package com.delivery.prediction.regression;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RegressionModelTests {
+
+	@Test
+	void linearModelIsDotProductPlusIntercept() {
+		LinearModel model = LinearModel.fromParameters(new double[]{10.0, 2.0, 0.5, 0.01},
+				FeatureSchema.TOTAL_ITEMS, FeatureSchema.SUBTOTAL, FeatureSchema.DRIVING_DURATION);
+		double[] features = FeatureSchema.newVector();
+		features[FeatureSchema.TOTAL_ITEMS] = 3;
+		features[FeatureSchema.SUBTOTAL] = 20;
+		features[FeatureSchema.DRIVING_DURATION] = 600;
+
+		assertEquals(10.0 + 6.0 + 10.0 + 6.0, model.predict(features), 1e-9);
+	}
+
+	@Test
+	void linearModelFillsMissingInputsWithTrainingMeans() {
+		LinearModel model = LinearModel.fromParameters(new double[]{10.0, 2.0, 0.5}, null, new double[]{4.0, 30.0},
+				FeatureSchema.TOTAL_ITEMS, FeatureSchema.ONSHIFT_DASHERS);
+		double[] features = FeatureSchema.newVector();
+		features[FeatureSchema.TOTAL_ITEMS] = 3;
+		features[FeatureSchema.ONSHIFT_DASHERS] = FeatureSchema.MISSING;
+
+		assertEquals(10.0 + 6.0 + 15.0, model.predict(features), 1e-9);
+
+		double[][] columns = new double[FeatureSchema.SIZE][];
+		for (int feature = 0; feature < FeatureSchema.SIZE; feature++) {
+			columns[feature] = new double[]{features[feature], 0.0};
+		}
+		columns[FeatureSchema.ONSHIFT_DASHERS][1] = 10;
+		double[] out = new double[2];
+		model.predictBatch(columns, 0, 2, out);
+		assertEquals(31.0, out[0], 1e-9);
+		assertEquals(10.0 + 5.0, out[1], 1e-9);
+	}
+
+	@Test
+	void polynomialModelUsesAscendingPowers() {
+		PolynomialModel model = new PolynomialModel(FeatureSchema.DRIVING_DURATION, new double[]{0.0, 1.5, 0.5});
+		double[] features = FeatureSchema.newVector();
+		features[FeatureSchema.DRIVING_DURATION] = 4;
+
+		assertEquals(1.5 * 4 + 0.5 * 16, model.predict(features), 1e-9);
+	}
+
+	@Test
+	void polynomialFitterRecoversQuadraticDegree() {
+		int rows = 20000;
+		double[] x = new double[rows];
+		double[] y = new double[rows];
+		Random random = new Random(42);
+		for (int i = 0; i < rows; i++) {
+			x[i] = 100 + random.nextDouble() * 2000;
+			y[i] = 20 + 0.01 * x[i] + 0.000005 * x[i] * x[i] + random.nextGaussian() * 3;
+		}
+
+		PolynomialModel model = new PolynomialFitter(4, 5, ForkJoinPool.commonPool())
+				.fit(FeatureSchema.DRIVING_DURATION, x, y, rows);
+		double[] features = FeatureSchema.newVector();
+		features[FeatureSchema.DRIVING_DURATION] = 1500;
+
+		assertEquals(2, model.getDegree());
+		assertEquals(20 + 15 + 0.000005 * 1500 * 1500, model.predict(features), 0.5);
+	}
+
+	@Test
+	void streamedPolynomialFitMatchesColumnFit() {
+		int rows = 20000;
+		double[] x = new double[rows];
+		double[] y = new double[rows];
+		Random random = new Random(7);
+		PolynomialFitter fitter = new PolynomialFitter(4, 5, ForkJoinPool.commonPool());
+		PolynomialFitter.Accumulator accumulator = fitter.accumulator();
+		for (int i = 0; i < rows; i++) {
+			x[i] = 100 + random.nextDouble() * 2000;
+			y[i] = 20 + 0.01 * x[i] + 0.000005 * x[i] * x[i] + random.nextGaussian() * 3;
+			accumulator.add(x[i], y[i]);
+		}
+
+		PolynomialModel columns = fitter.fit(FeatureSchema.DRIVING_DURATION, x, y, rows);
+		PolynomialModel streamed = accumulator.fit(FeatureSchema.DRIVING_DURATION);
+
+		assertEquals(columns.getDegree(), streamed.getDegree());
+		double[] features = FeatureSchema.newVector();
+		for (double duration = 100; duration <= 2100; duration += 250) {
+			features[FeatureSchema.DRIVING_DURATION] = duration;
+			assertEquals(columns.predict(features), streamed.predict(features), 1e-6);
+		}
+	}
+
+	@Test
+	void linearExplanationSplitsPredictionIntoContributions() {
+		// Intercept and slope variances 4 and 0.25, covariance -0.5, residual variance 9
+		ParameterCovariance covariance = ParameterCovariance.fromMatrix(
+				new double[][]{{4.0, -0.5}, {-0.5, 0.25}}, 9.0, 100);
+		LinearModel model = LinearModel.fromParameters(new double[]{10.0, 2.0}, covariance, FeatureSchema.TOTAL_ITEMS);
+		double[] features = FeatureSchema.newVector();
+		features[FeatureSchema.TOTAL_ITEMS] = 3;
+		double[] baseline = FeatureSchema.newVector();
+		baseline[FeatureSchema.TOTAL_ITEMS] = 1;
+
+		PredictionExplanation explanation = model.explain(features, baseline);
+
+		assertEquals(16.0, explanation.getPrediction(), 1e-9);
+		assertEquals(12.0, explanation.getBaseline(), 1e-9);
+		assertEquals(4.0, explanation.getContributions()[0], 1e-9);
+		// 9 + 4 + 2 * 3 * -0.5 + 9 * 0.25
+		assertEquals(Math.sqrt(12.25), explanation.getStandardError(), 1e-9);
+		assertEquals(100, explanation.getDegreesOfFreedom());
+	}
+
+	@Test
+	void polynomialFitterStandardErrorTracksNoise() {
+		int rows = 20000;
+		double[] x = new double[rows];
+		double[] y = new double[rows];
+		Random random = new Random(7);
+		for (int i = 0; i < rows; i++) {
+			x[i] = 100 + random.nextDouble() * 2000;
+			y[i] = 20 + 0.01 * x[i] + random.nextGaussian() * 3;
+		}
+
+		PolynomialModel model = new PolynomialFitter(4, 5, ForkJoinPool.commonPool())
+				.fit(FeatureSchema.DRIVING_DURATION, x, y, rows);
+		double[] features = FeatureSchema.newVector();
+		features[FeatureSchema.DRIVING_DURATION] = 1500;
+		double[] baseline = FeatureSchema.newVector();
+		baseline[FeatureSchema.DRIVING_DURATION] = 1000;
+
+		PredictionExplanation explanation = model.explain(features, baseline);
+
+		// With this many rows the parameter uncertainty is small next to the residual noise
+		assertEquals(3.0, explanation.getStandardError(), 0.1);
+		assertEquals(rows - model.getCoefficients().length, explanation.getDegreesOfFreedom());
+		assertEquals(5.0, explanation.getContributions()[0], 0.5);
+	}
+
+	@Test
+	void segmentedModelRoutesByCategoryThenMarketThenFallback() {
+		int pizza = FeatureSchema.categoryCode("pizza");
+		SegmentedModel model = new SegmentedModel(constant(1.0),
+				new long[]{SegmentedModel.key(7, SegmentedModel.ANY_CATEGORY), SegmentedModel.key(7, pizza)},
+				new RegressionModel[]{constant(2.0), constant(3.0)});
+		double[] features = FeatureSchema.newVector();
+
+		features[FeatureSchema.MARKET_ID] = 7;
+		features[FeatureSchema.STORE_CATEGORY] = pizza;
+		assertEquals(3.0, model.predict(features));
+		features[FeatureSchema.STORE_CATEGORY] = FeatureSchema.categoryCode("sushi");
+		assertEquals(2.0, model.predict(features));
+		features[FeatureSchema.MARKET_ID] = FeatureSchema.UNKNOWN_MARKET;
+		assertEquals(1.0, model.predict(features));
+	}
+
+	private static LinearModel constant(double value) {
+		return new LinearModel(value, new int[0], new double[0]);
+	}
+
+}
@@ -0,0 +1,62 @@
+package com.delivery.prediction.repository;
+
+import com.delivery.prediction.analytics.DeliveryTimeAggregate;
+import com.delivery.prediction.perf.PorterDataGenerator;
+import com.delivery.prediction.regression.FeatureSchema;
+import com.delivery.prediction.regression.LinearModel;
+import com.delivery.prediction.regression.ModelType;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AnalyticsQueryRepositoryTests {
+
+	@Test
+	void pushedDownSumsOfSquaresMatchTheRows() throws SQLException {
+		String url = PorterDataGenerator.h2Url("analytics-query");
+		PorterDataGenerator.generate(url, 3000, 7);
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(url, "sa", ""));
+
+		AnalyticsQueryRepository repository = new AnalyticsQueryRepository();
+		ReflectionTestUtils.setField(repository, "jdbcTemplate", jdbcTemplate);
+		TrainingDataRepository trainingData = new TrainingDataRepository();
+		ReflectionTestUtils.setField(trainingData, "jdbcTemplate", jdbcTemplate);
+		ReflectionTestUtils.setField(trainingData, "fetchSize", 500);
+
+		LinearModel model = new LinearModel(12.5, new int[]{FeatureSchema.DRIVING_DURATION, FeatureSchema.TOTAL_ITEMS},
+				new double[]{0.018, 0.9});
+		Map<Integer, DeliveryTimeAggregate> markets = repository.aggregateByMarket(
+				Map.of(ModelType.MULTIPLE, AnalyticsQueryRepository.toSqlExpression(model)));
+
+		// Prediction totals of the same rows, one row at a time
+		Map<Integer, double[]> expected = new HashMap<>();
+		trainingData.streamTrainingRows((marketId, features, deliveryMinutes) -> {
+			double predicted = model.predict(features);
+			double[] sums = expected.computeIfAbsent(marketId, id -> new double[3]);
+			sums[0]++;
+			sums[1] += predicted;
+			sums[2] += predicted * predicted;
+		});
+
+		assertEquals(expected.keySet(), markets.keySet());
+		for (Map.Entry<Integer, double[]> entry : expected.entrySet()) {
+			DeliveryTimeAggregate market = markets.get(entry.getKey());
+			double[] sums = entry.getValue();
+			assertEquals((long) sums[0], market.getCount());
+			assertEquals(sums[1], market.getPredictedSum(ModelType.MULTIPLE), 1e-9 * sums[1]);
+			assertEquals(sums[2], market.getPredictedSquares(ModelType.MULTIPLE), 1e-9 * sums[2]);
+			// A sum of squares, not the square of the sum: the implied variance is a plausible one
+			double mean = market.averageActual();
+			double variance = market.getActualSquares() / market.getCount() - mean * mean;
+			assertTrue(variance > 0 && variance < mean * mean, "variance " + variance);
+		}
+	}
+}
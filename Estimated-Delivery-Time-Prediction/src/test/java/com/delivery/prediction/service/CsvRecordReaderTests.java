@@ -0,0 +1,29 @@
+package com.delivery.prediction.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class CsvRecordReaderTests {
+
+	@Test
+	void readsQuotedFieldsAndLineEndings() throws IOException {
+		CsvRecordReader reader = new CsvRecordReader(new StringReader(
+				"market_id,store_primary_category,subtotal\r\n"
+						+ "1,\"thai, \"\"spicy\"\"\",3441\r\n"
+						+ "\n"
+						+ "2,,\"multi\nline\"\n"
+						+ "3,pizza,"));
+
+		assertEquals(List.of("market_id", "store_primary_category", "subtotal"), reader.next());
+		assertEquals(List.of("1", "thai, \"spicy\"", "3441"), reader.next());
+		assertEquals(List.of("2", "", "multi\nline"), reader.next());
+		assertEquals(List.of("3", "pizza", ""), reader.next());
+		assertNull(reader.next());
+	}
+}
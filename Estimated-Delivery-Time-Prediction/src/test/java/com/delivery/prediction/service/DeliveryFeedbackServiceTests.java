@@ -0,0 +1,200 @@
+package com.delivery.prediction.service;
+
+import com.delivery.prediction.model.Prediction;
+import com.delivery.prediction.perf.PorterDataGenerator;
+import com.delivery.prediction.repository.PredictionBatchWriter;
+import com.delivery.prediction.repository.PredictionExportRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+// Against porter_data in an in-memory H2 database, as in the perf profile
+class DeliveryFeedbackServiceTests {
+
+	private static final LocalDateTime CREATED_AT = LocalDateTime.of(2015, 2, 6, 22, 24, 17);
+
+	private JdbcTemplate jdbcTemplate;
+	private PredictionBatchWriter writer;
+	private DeliveryFeedbackService service;
+
+	@BeforeEach
+	void setUp() throws SQLException {
+		DriverManagerDataSource dataSource = new DriverManagerDataSource(
+				PorterDataGenerator.h2Url("feedback-" + UUID.randomUUID()), "sa", "");
+		try (Connection connection = dataSource.getConnection()) {
+			PorterDataGenerator.createSchema(connection);
+		}
+		jdbcTemplate = new JdbcTemplate(dataSource);
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+		writer = new PredictionBatchWriter();
+		ReflectionTestUtils.setField(writer, "jdbcTemplate", jdbcTemplate);
+		ReflectionTestUtils.setField(writer, "batchSize", 100);
+
+		PredictionExportRepository exportRepository = new PredictionExportRepository();
+		ReflectionTestUtils.setField(exportRepository, "jdbcTemplate", jdbcTemplate);
+		ReflectionTestUtils.setField(exportRepository, "fetchSize", 100);
+
+		DatabaseConcurrencyLimiter limiter = new DatabaseConcurrencyLimiter();
+		ReflectionTestUtils.setField(limiter, "maxConcurrency", 2);
+		ReflectionTestUtils.setField(limiter, "acquireTimeoutMs", 5000L);
+		ReflectionTestUtils.setField(limiter, "meterRegistry", registry);
+		limiter.start();
+
+		AnalyticsAggregateStore aggregateStore = new AnalyticsAggregateStore();
+		ReflectionTestUtils.setField(aggregateStore, "analyticsEngine", "incremental");
+
+		DeliveryTimeSeriesService timeSeries = new DeliveryTimeSeriesService();
+		ReflectionTestUtils.setField(timeSeries, "enabled", false);
+
+		service = new DeliveryFeedbackService();
+		ReflectionTestUtils.setField(service, "predictionBatchWriter", writer);
+		ReflectionTestUtils.setField(service, "predictionExportRepository", exportRepository);
+		ReflectionTestUtils.setField(service, "databaseLimiter", limiter);
+		ReflectionTestUtils.setField(service, "analyticsAggregateStore", aggregateStore);
+		ReflectionTestUtils.setField(service, "deliveryTimeSeriesService", timeSeries);
+		ReflectionTestUtils.setField(service, "featureStore", new FeatureStore());
+		ReflectionTestUtils.setField(service, "objectMapper", Jackson2ObjectMapperBuilder.json().build());
+		ReflectionTestUtils.setField(service, "meterRegistry", registry);
+		// Small chunks, so duplicates are caught both within a chunk and against loaded rows
+		ReflectionTestUtils.setField(service, "chunkSize", 2);
+		ReflectionTestUtils.setField(service, "maxDeliveryMinutes", 1440L);
+		ReflectionTestUtils.setField(service, "maxReportedErrors", 100);
+	}
+
+	private Map<String, Object> ingest(String json) throws IOException {
+		return service.ingestJson(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8))).toMap();
+	}
+
+	private static String record(String orderId, LocalDateTime createdAt, LocalDateTime actual, String extra) {
+		return "{\"orderId\":\"" + orderId + "\""
+				+ (createdAt == null ? "" : ",\"createdAt\":\"" + createdAt + "\"")
+				+ ",\"actualDeliveryTime\":\"" + actual + "\"" + extra + "}";
+	}
+
+	private long rows(String orderId) {
+		return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM porter_data WHERE order_id = ?", Long.class, orderId);
+	}
+
+	@Test
+	void updatesPredictedOrdersInsertsNewOnesAndCountsDuplicates() throws IOException {
+		writer.insertAll(List.of(Prediction.builder().orderId("A").marketId(1).createdAt(CREATED_AT)
+				.totalItems(3).subtotal(2500.0).estimatedStoreToConsumerDrivingDuration(600)
+				.predictedDeliveryTime(CREATED_AT.plusMinutes(40)).build()));
+
+		LocalDateTime delivered = CREATED_AT.plusMinutes(45);
+		Map<String, Object> summary = ingest("["
+				+ record("A", null, delivered, "") + ","
+				+ record("B", CREATED_AT, delivered, ",\"marketId\":2,\"totalItems\":4") + ","
+				// Same chunk as its twin
+				+ record("C", CREATED_AT, delivered, "") + ","
+				+ record("C", CREATED_AT, delivered, "") + ","
+				// A already has its outcome from the first chunk
+				+ record("A", null, delivered.plusMinutes(5), "")
+				+ "]");
+
+		assertEquals(5L, summary.get("received"));
+		assertEquals(1L, summary.get("updated"));
+		assertEquals(2L, summary.get("inserted"));
+		assertEquals(2L, summary.get("duplicates"));
+		assertEquals(0L, summary.get("rejected"));
+		assertNull(summary.get("error"));
+
+		assertEquals(1, rows("A"));
+		assertEquals(1, rows("B"));
+		assertEquals(1, rows("C"));
+		assertEquals(delivered, jdbcTemplate.queryForObject(
+				"SELECT actual_delivery_time FROM porter_data WHERE order_id = 'A'", LocalDateTime.class));
+		assertEquals(4, jdbcTemplate.queryForObject(
+				"SELECT total_items FROM porter_data WHERE order_id = 'B'", Integer.class));
+
+		// Sending the same feedback again changes nothing
+		summary = ingest(record("B", CREATED_AT, delivered, ""));
+		assertEquals(1L, summary.get("duplicates"));
+		assertEquals(0L, summary.get("inserted"));
+		assertEquals(1, rows("B"));
+	}
+
+	@Test
+	void resendingDeliveriesWithoutOrderIdsIsHarmless() throws IOException {
+		String csv = String.join("\n",
+				"market_id,created_at,actual_delivery_time,store_id,store_primary_category,total_items,subtotal,"
+						+ "estimated_store_to_consumer_driving_duration",
+				"1,2015-02-06 22:24:17,2015-02-06 23:27:16,1845,american,4,3441,861",
+				"2,2015-02-10 21:49:25,2015-02-10 22:56:29,5477,mexican,1,1900,690",
+				// Same order time as the first row, but another delivery
+				"1,2015-02-06 22:24:17,2015-02-06 23:10:00,2001,pizza,2,1500,420");
+
+		Map<String, Object> summary = service.ingestCsv(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8))).toMap();
+		assertEquals(3L, summary.get("inserted"));
+		assertEquals(0L, summary.get("duplicates"));
+
+		summary = service.ingestCsv(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8))).toMap();
+		assertEquals(0L, summary.get("inserted"));
+		assertEquals(3L, summary.get("duplicates"));
+		assertEquals(3, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM porter_data", Long.class));
+
+		// The same delivery twice in one body is loaded once
+		String delivery = "{\"marketId\":3,\"createdAt\":\"" + CREATED_AT + "\",\"actualDeliveryTime\":\""
+				+ CREATED_AT.plusMinutes(20) + "\",\"totalItems\":1}";
+		summary = ingest("[" + delivery + "," + delivery + "]");
+		assertEquals(1L, summary.get("inserted"));
+		assertEquals(1L, summary.get("duplicates"));
+	}
+
+	@Test
+	void rejectsInvalidAndUnmappableRecordsWithoutStopping() throws IOException {
+		LocalDateTime delivered = CREATED_AT.plusMinutes(30);
+		// Newline-delimited
+		Map<String, Object> summary = ingest(String.join("\n",
+				"{\"orderId\":\"P\",\"createdAt\":\"" + CREATED_AT + "\",\"actualDeliveryTime\":\"yesterday\"}",
+				record("Q", CREATED_AT, delivered, ",\"totalItems\":\"three\""),
+				record("R", null, delivered, ""),
+				record("S", CREATED_AT, CREATED_AT.minusMinutes(1), ""),
+				record("T", CREATED_AT, CREATED_AT.plusDays(2), ""),
+				record("U", CREATED_AT, delivered, ",\"subtotal\":-1"),
+				"{\"orderId\":\"\",\"createdAt\":\"" + CREATED_AT + "\",\"actualDeliveryTime\":\"" + delivered + "\"}",
+				"42",
+				record("V", CREATED_AT, delivered, ",\"storeId\":7")));
+
+		assertEquals(9L, summary.get("received"));
+		assertEquals(8L, summary.get("rejected"));
+		assertEquals(1L, summary.get("inserted"));
+		assertNull(summary.get("error"));
+		assertEquals(8, ((List<?>) summary.get("errors")).size());
+		assertEquals(1, rows("V"));
+		assertEquals(0, rows("P") + rows("Q") + rows("R") + rows("S") + rows("T") + rows("U"));
+	}
+
+	@Test
+	void stopsAtBrokenJsonAfterLoadingTheRecordsBeforeIt() throws IOException {
+		LocalDateTime delivered = CREATED_AT.plusMinutes(30);
+		Map<String, Object> summary = ingest("["
+				+ record("A", CREATED_AT, delivered, "") + ","
+				+ record("B", CREATED_AT, delivered, "") + ","
+				+ "{\"orderId\": ]");
+
+		assertNotNull(summary.get("error"));
+		assertEquals(2L, summary.get("inserted"));
+		assertEquals(1, rows("A"));
+		assertEquals(1, rows("B"));
+	}
+}
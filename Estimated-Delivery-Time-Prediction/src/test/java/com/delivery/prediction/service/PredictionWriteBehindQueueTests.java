@@ -0,0 +1,82 @@
+package com.delivery.prediction.service;
+
+import com.delivery.prediction.model.Prediction;
+import com.delivery.prediction.repository.PredictionBatchWriter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PredictionWriteBehindQueueTests {
+
+	// Counts rows instead of inserting them
+	private static final class CountingWriter extends PredictionBatchWriter {
+
+		private final AtomicInteger rows = new AtomicInteger();
+
+		@Override
+		public void insertAll(List<Prediction> predictions) {
+			rows.addAndGet(predictions.size());
+		}
+	}
+
+	private static PredictionWriteBehindQueue queue(CountingWriter writer, int capacity,
+													PredictionWriteBehindQueue.OverflowPolicy policy) {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		DatabaseConcurrencyLimiter limiter = new DatabaseConcurrencyLimiter();
+		ReflectionTestUtils.setField(limiter, "maxConcurrency", 4);
+		ReflectionTestUtils.setField(limiter, "acquireTimeoutMs", 5000L);
+		ReflectionTestUtils.setField(limiter, "meterRegistry", registry);
+		limiter.start();
+
+		PredictionWriteBehindQueue queue = new PredictionWriteBehindQueue();
+		ReflectionTestUtils.setField(queue, "enabled", true);
+		ReflectionTestUtils.setField(queue, "capacity", capacity);
+		ReflectionTestUtils.setField(queue, "flushSize", 50);
+		ReflectionTestUtils.setField(queue, "flushIntervalMs", 5L);
+		ReflectionTestUtils.setField(queue, "overflowPolicy", policy);
+		ReflectionTestUtils.setField(queue, "shutdownTimeoutMs", 10000L);
+		ReflectionTestUtils.setField(queue, "predictionBatchWriter", writer);
+		ReflectionTestUtils.setField(queue, "meterRegistry", registry);
+		ReflectionTestUtils.setField(queue, "databaseLimiter", limiter);
+		queue.start();
+		return queue;
+	}
+
+	@Test
+	void everyRecordIsWrittenWhenShutdownRacesEnqueue() throws InterruptedException {
+		for (PredictionWriteBehindQueue.OverflowPolicy policy : PredictionWriteBehindQueue.OverflowPolicy.values()) {
+			if (policy == PredictionWriteBehindQueue.OverflowPolicy.DROP) {
+				continue;
+			}
+			CountingWriter writer = new CountingWriter();
+			PredictionWriteBehindQueue queue = queue(writer, 16, policy);
+			int producers = 4;
+			int perProducer = 2000;
+
+			ExecutorService executor = Executors.newFixedThreadPool(producers);
+			for (int p = 0; p < producers; p++) {
+				executor.execute(() -> {
+					for (int i = 0; i < perProducer; i++) {
+						queue.enqueue(new Prediction());
+					}
+				});
+			}
+			// Shut down while the producers are still enqueueing
+			Thread.sleep(5);
+			queue.shutdown();
+			executor.shutdown();
+			assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+			assertEquals(producers * perProducer, writer.rows.get(), policy.name());
+		}
+	}
+}
@@ -0,0 +1,37 @@
+package com.delivery.prediction.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class SupplySnapshotServiceTests {
+
+	@Test
+	void packedCountsUnpackIndependently() {
+		long state = SupplySnapshotService.pack(12, 7, 30);
+
+		assertEquals(12, SupplySnapshotService.onshiftDashers(state));
+		assertEquals(7, SupplySnapshotService.busyDashers(state));
+		assertEquals(30, SupplySnapshotService.outstandingOrders(state));
+	}
+
+	@Test
+	void countsAreClampedWithoutTouchingTheirNeighbours() {
+		long max = SupplySnapshotService.MAX_COUNT;
+		long state = SupplySnapshotService.pack(-5, max + 100, 3);
+
+		assertEquals(0, SupplySnapshotService.onshiftDashers(state));
+		assertEquals(SupplySnapshotService.MAX_COUNT, SupplySnapshotService.busyDashers(state));
+		assertEquals(3, SupplySnapshotService.outstandingOrders(state));
+	}
+
+	@Test
+	void fullCountsNeverReadAsMissing() {
+		long max = SupplySnapshotService.MAX_COUNT;
+		long state = SupplySnapshotService.pack(max, max, max);
+
+		assertNotEquals(SupplySnapshotService.MISSING, state);
+		assertEquals(SupplySnapshotService.MAX_COUNT, SupplySnapshotService.outstandingOrders(state));
+	}
+}